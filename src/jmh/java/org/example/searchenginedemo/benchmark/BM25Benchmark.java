@@ -0,0 +1,52 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.service.BM25Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次 BM25 评分的开销：文档长度取自内存中的 NormsService，语料统计已缓存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BM25Benchmark {
+    private static final int INPUTS = 1024;
+
+    private BM25Service bm25Service;
+    private final int[] docIds = new int[INPUTS];
+    private final int[] termFrequencies = new int[INPUTS];
+    private final int[] documentFrequencies = new int[INPUTS];
+    private double idf;
+    private int next;
+
+    @Setup
+    public void setup() {
+        int pageCount = 5_000;
+        bm25Service = new BenchmarkFixtures(pageCount, 300).getBm25Service();
+        Random random = new Random(BenchmarkFixtures.SEED);
+        for (int i = 0; i < INPUTS; i++) {
+            docIds[i] = 1 + random.nextInt(pageCount);
+            termFrequencies[i] = 1 + random.nextInt(10);
+            documentFrequencies[i] = 1 + random.nextInt(pageCount / 2);
+        }
+        idf = bm25Service.idf(pageCount / 10);
+    }
+
+    @Benchmark
+    public double score() {
+        int i = next++ & (INPUTS - 1);
+        return bm25Service.score(termFrequencies[i], documentFrequencies[i], docIds[i]);
+    }
+
+    @Benchmark
+    public double scoreWithIdf() {
+        int i = next++ & (INPUTS - 1);
+        return bm25Service.scoreWithIdf(termFrequencies[i], idf, docIds[i]);
+    }
+}
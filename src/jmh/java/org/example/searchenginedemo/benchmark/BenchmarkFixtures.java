@@ -0,0 +1,92 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.index.LiveDocs;
+import org.example.searchenginedemo.metrics.SearchMetrics;
+import org.example.searchenginedemo.service.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+/**
+ * 在不启动 Spring 容器的情况下组装搜索相关的服务，依赖的 Mapper 全部替换为内存实现。
+ * Redis、Kafka 与本地索引段不参与搜索热路径，保持未注入状态。
+ */
+public final class BenchmarkFixtures {
+    public static final long SEED = 20240601L;
+
+    private final List<String> pages;
+    private final TextAnalyzer analyzer;
+    private final InMemorySearchMapper searchMapper;
+    private final NormsService normsService = new NormsService();
+    private final BM25Service bm25Service = new BM25Service();
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+    private final SearchService searchService = new SearchService();
+
+    public BenchmarkFixtures(int pageCount, int wordsPerPage) {
+        this.pages = new SyntheticCorpus(SEED).pages(pageCount, wordsPerPage);
+        this.analyzer = newAnalyzer();
+        this.searchMapper = new InMemorySearchMapper(pages, analyzer);
+
+        searchMapper.getLengths().forEach(normsService::put);
+        ShardService shardService = new ShardService();
+        ReflectionTestUtils.setField(bm25Service, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(bm25Service, "normsService", normsService);
+        ReflectionTestUtils.setField(bm25Service, "shardService", shardService);
+
+        HydrationService hydrationService = new HydrationService();
+        ReflectionTestUtils.setField(hydrationService, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(hydrationService, "shardService", shardService);
+
+        QueryCacheService queryCacheService = new QueryCacheService();
+        ReflectionTestUtils.setField(queryCacheService, "indexGeneration", indexGeneration);
+
+        PostingsService postingsService = new PostingsService();
+        ReflectionTestUtils.setField(postingsService, "searchMapper", searchMapper);
+
+        ReflectionTestUtils.setField(searchService, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(searchService, "bm25Service", bm25Service);
+        ReflectionTestUtils.setField(searchService, "hydrationService", hydrationService);
+        ReflectionTestUtils.setField(searchService, "queryCacheService", queryCacheService);
+        ReflectionTestUtils.setField(searchService, "postingsService", postingsService);
+        ReflectionTestUtils.setField(searchService, "segmentStore", new SegmentStore());
+        ReflectionTestUtils.setField(searchService, "textAnalyzer", analyzer);
+        ReflectionTestUtils.setField(searchService, "searchMetrics", new SearchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(searchService, "indexGeneration", indexGeneration);
+        ReflectionTestUtils.setField(searchService, "liveDocs", new LiveDocs());
+        // 未注入配置时查询词计数处于关闭状态，不需要 Redis
+        ReflectionTestUtils.setField(searchService, "termCountService", new TermCountService());
+    }
+
+    public static TextAnalyzer newAnalyzer() {
+        TextAnalyzer analyzer = new TextAnalyzer();
+        analyzer.init();
+        return analyzer;
+    }
+
+    public List<String> getPages() {
+        return pages;
+    }
+
+    public TextAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public InMemorySearchMapper getSearchMapper() {
+        return searchMapper;
+    }
+
+    public BM25Service getBm25Service() {
+        return bm25Service;
+    }
+
+    public IndexGeneration getIndexGeneration() {
+        return indexGeneration;
+    }
+
+    public SearchService getSearchService() {
+        return searchService;
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.entity.PageStats;
+import org.example.searchenginedemo.index.PostingsWriter;
+import org.example.searchenginedemo.mapper.SearchMapper;
+import org.example.searchenginedemo.util.PageTables;
+
+import java.util.*;
+
+/**
+ * SearchMapper 的内存实现：页面按 id 对分表数取模分布，word_dict 同时保存文本与二进制倒排表，
+ * 基准测试无需 MySQL。
+ */
+public class InMemorySearchMapper implements SearchMapper {
+    private final Map<Integer, String> contents = new HashMap<>();
+    private final Map<Integer, Integer> lengths = new HashMap<>();
+    private final Map<String, String> legacyPostings = new HashMap<>();
+    private final Map<String, byte[]> postings = new HashMap<>();
+
+    public InMemorySearchMapper(List<String> pages, TextAnalyzer analyzer) {
+        Map<String, PostingsWriter> writers = new HashMap<>();
+        Map<String, StringBuilder> legacy = new HashMap<>();
+        for (int i = 0; i < pages.size(); i++) {
+            int docId = i + 1;
+            contents.put(docId, pages.get(i));
+            int length = 0;
+            for (Map.Entry<String, List<Integer>> entry : analyzer.analyzeWithPositions(pages.get(i)).entrySet()) {
+                PostingsWriter writer = writers.computeIfAbsent(entry.getKey(), k -> new PostingsWriter());
+                StringBuilder text = legacy.computeIfAbsent(entry.getKey(), k -> new StringBuilder());
+                for (Integer position : entry.getValue()) {
+                    writer.add(docId, position);
+                    text.append(',').append(docId).append(':').append(position);
+                }
+                length += entry.getValue().size();
+            }
+            lengths.put(docId, length);
+        }
+        writers.forEach((term, writer) -> postings.put(term, writer.toByteArray()));
+        legacy.forEach((term, text) -> legacyPostings.put(term, text.toString()));
+    }
+
+    public Map<Integer, Integer> getLengths() {
+        return lengths;
+    }
+
+    /**
+     * 旧的文本格式倒排表 ",doc:pos,doc:pos"
+     */
+    public Map<String, String> getLegacyPostings() {
+        return legacyPostings;
+    }
+
+    private static int shardOf(int docId) {
+        return docId % PageTables.SHARD_COUNT;
+    }
+
+    private static boolean inTable(String table, int docId) {
+        return PageTables.tableName(shardOf(docId)).equals(table);
+    }
+
+    @Override
+    public PageStats getPageStats(String table) {
+        PageStats stats = new PageStats();
+        lengths.forEach((docId, length) -> {
+            if (inTable(table, docId)) {
+                stats.setPageCount(stats.getPageCount() + 1);
+                stats.setTotalLength(stats.getTotalLength() + length);
+                stats.setLengthCount(stats.getLengthCount() + 1);
+            }
+        });
+        return stats;
+    }
+
+    @Override
+    public List<Integer> getAllPageIds(String table) {
+        List<Integer> ids = new ArrayList<>();
+        for (Integer docId : contents.keySet()) {
+            if (inTable(table, docId)) {
+                ids.add(docId);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public String getPageContent(String table, int docId) {
+        return inTable(table, docId) ? contents.get(docId) : null;
+    }
+
+    @Override
+    public List<Map<String, Object>> getPageContents(String table, Collection<Integer> docIds) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Integer docId : docIds) {
+            if (inTable(table, docId) && contents.containsKey(docId)) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("id", docId);
+                row.put("content", contents.get(docId));
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int getPageFrequency(String term) {
+        String text = legacyPostings.get(term);
+        return text == null ? 0 : text.split(",").length - 1;
+    }
+
+    @Override
+    public Map<String, Object> getTermPositions(String term) {
+        return postings.containsKey(term) ? row(term) : null;
+    }
+
+    @Override
+    public List<Map<String, Object>> searchTerms(List<String> terms) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String term : terms) {
+            if (postings.containsKey(term)) {
+                rows.add(row(term));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Integer getPageLength(String table, int docId) {
+        return inTable(table, docId) ? lengths.get(docId) : null;
+    }
+
+    private Map<String, Object> row(String term) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", term);
+        row.put("positions", null);
+        row.put("postings", postings.get(term));
+        return row;
+    }
+}
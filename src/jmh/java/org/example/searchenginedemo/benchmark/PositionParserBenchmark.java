@@ -0,0 +1,57 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.util.PositionParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 倒排表解码：旧的文本格式解析与二进制格式游标遍历的对比，输入为高、中、低频三个词
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PositionParserBenchmark {
+
+    @Param({"搜索", "算法", "图书馆"})
+    public String term;
+
+    private String legacy;
+    private byte[] postings;
+    private final PostingsCursor cursor = new PostingsCursor();
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(5_000, 300);
+        legacy = fixtures.getSearchMapper().getLegacyPostings().get(term);
+        postings = PostingsCodec.fromLegacy(legacy);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> parseLegacy() {
+        return PositionParser.parsePositions(legacy);
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole blackhole) {
+        cursor.reset(postings);
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            for (int i = cursor.freq(); i > 0; i--) {
+                blackhole.consume(cursor.nextPosition());
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] convertLegacy() {
+        return PostingsCodec.fromLegacy(legacy);
+    }
+}
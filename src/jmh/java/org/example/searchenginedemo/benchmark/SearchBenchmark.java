@@ -0,0 +1,57 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.entity.vo.SearchResult;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.service.SearchService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端搜索：查询分析、读取倒排表、MaxScore 求值与结果装配。
+ * uncached 每次调用前推进索引代数，使查询结果缓存不命中；倒排表缓存仍然生效。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int QUERIES = 256;
+
+    @Param({"10000"})
+    public int pageCount;
+
+    @Param({"false", "true"})
+    public boolean withContent;
+
+    private SearchService searchService;
+    private IndexGeneration indexGeneration;
+    private final List<String> queries = new ArrayList<>(QUERIES);
+    private int next;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(pageCount, 300);
+        searchService = fixtures.getSearchService();
+        indexGeneration = fixtures.getIndexGeneration();
+        SyntheticCorpus corpus = new SyntheticCorpus(BenchmarkFixtures.SEED + 1);
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(corpus.nextQuery(4));
+        }
+    }
+
+    @Benchmark
+    public List<SearchResult> uncached() {
+        indexGeneration.increment();
+        return searchService.search(queries.get(next++ % QUERIES), 10, withContent);
+    }
+
+    @Benchmark
+    public List<SearchResult> cached() {
+        return searchService.search(queries.get(next++ % QUERIES), 10, withContent);
+    }
+}
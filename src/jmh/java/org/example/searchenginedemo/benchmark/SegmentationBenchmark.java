@@ -0,0 +1,51 @@
+package org.example.searchenginedemo.benchmark;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.service.SegmentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分词吞吐：索引路径(TextAnalyzer.analyzeAll)与 SegmentService.segmentText，单位为页面/秒
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentationBenchmark {
+    private static final int BATCH = 64;
+
+    @Param({"100", "1000"})
+    public int wordsPerPage;
+
+    private TextAnalyzer analyzer;
+    private SegmentService segmentService;
+    private List<String> pages;
+    private int next;
+
+    @Setup
+    public void setup() {
+        analyzer = BenchmarkFixtures.newAnalyzer();
+        segmentService = new SegmentService();
+        ReflectionTestUtils.setField(segmentService, "textAnalyzer", analyzer);
+        pages = new SyntheticCorpus(BenchmarkFixtures.SEED).pages(BATCH * 16, wordsPerPage);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Map<String, List<Integer>>> analyzeBatch() {
+        int from = (next++ % 16) * BATCH;
+        return analyzer.analyzeAll(pages.subList(from, from + BATCH));
+    }
+
+    @Benchmark
+    public String segmentText() {
+        return segmentService.segmentText(pages.get(next++ % pages.size()));
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.searchenginedemo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 确定性的合成中文语料：词频服从 Zipf 分布，句子之间以中文标点分隔。
+ * 相同的种子和参数总是生成相同的页面，便于比较不同版本的基准结果。
+ */
+public final class SyntheticCorpus {
+
+    // 按常见程度排列的词表，排名越靠前出现越频繁
+    private static final String[] VOCABULARY = {
+            "的", "是", "在", "我们", "一个", "中国", "数据", "搜索", "引擎", "系统",
+            "用户", "查询", "索引", "网络", "信息", "技术", "发展", "问题", "方法", "研究",
+            "服务", "平台", "应用", "企业", "市场", "经济", "社会", "文化", "教育", "历史",
+            "城市", "北京", "上海", "科学", "计算机", "软件", "硬件", "算法", "模型", "性能",
+            "优化", "分布式", "存储", "数据库", "缓存", "消息", "队列", "服务器", "客户端", "接口",
+            "安全", "隐私", "政策", "管理", "工程", "设计", "架构", "团队", "项目", "产品",
+            "新闻", "体育", "足球", "篮球", "音乐", "电影", "旅游", "美食", "健康", "医疗",
+            "环境", "能源", "交通", "汽车", "手机", "电脑", "互联网", "人工智能", "机器学习", "自然语言",
+            "处理", "分析", "统计", "结果", "排序", "相关性", "文档", "页面", "链接", "爬虫",
+            "分词", "词典", "倒排", "压缩", "编码", "解码", "吞吐", "延迟", "并发", "线程",
+            "春天", "夏天", "秋天", "冬天", "山水", "河流", "森林", "海洋", "天空", "星星",
+            "学生", "老师", "学校", "大学", "考试", "论文", "图书馆", "实验", "报告", "会议"
+    };
+    private static final String[] PUNCTUATION = {"，", "。", "、", "；", "！", "？"};
+
+    private final Random random;
+    private final double[] cumulative;
+
+    public SyntheticCorpus(long seed) {
+        this.random = new Random(seed);
+        this.cumulative = new double[VOCABULARY.length];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY.length; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, 1.1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public String nextWord() {
+        double r = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < r) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return VOCABULARY[low];
+    }
+
+    /**
+     * 生成约 words 个词的页面正文
+     */
+    public String nextPage(int words) {
+        StringBuilder text = new StringBuilder(words * 3);
+        int sentence = 0;
+        for (int i = 0; i < words; i++) {
+            text.append(nextWord());
+            if (++sentence >= 8 + random.nextInt(12)) {
+                text.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+                sentence = 0;
+            }
+        }
+        return text.append('。').toString();
+    }
+
+    public List<String> pages(int count, int wordsPerPage) {
+        List<String> pages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pages.add(nextPage(wordsPerPage / 2 + random.nextInt(wordsPerPage)));
+        }
+        return pages;
+    }
+
+    /**
+     * 由 1 到 maxTerms 个中低频词组成的查询
+     */
+    public String nextQuery(int maxTerms) {
+        int terms = 1 + random.nextInt(maxTerms);
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                query.append(' ');
+            }
+            query.append(VOCABULARY[5 + random.nextInt(VOCABULARY.length - 5)]);
+        }
+        return query.toString();
+    }
+}
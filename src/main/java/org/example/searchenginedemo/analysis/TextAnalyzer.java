@@ -0,0 +1,124 @@
+package org.example.searchenginedemo.analysis;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * 索引与查询共用的文本分析流程：NFKC 规范化 -> Jieba 分词 -> 小写 -> 过滤标点与可选的停用词。
+ * 每个线程持有独立的 JiebaSegmenter，词典在启动时加载一次并在所有实例间共享。
+ */
+@Component
+public class TextAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(TextAnalyzer.class);
+
+    private static final String STOPWORDS_RESOURCE = "analysis/stopwords.txt";
+
+    @Value("${search.analyzer.stopwords-enabled:false}")
+    private boolean stopwordsEnabled;
+
+    private final ThreadLocal<JiebaSegmenter> segmenters = ThreadLocal.withInitial(JiebaSegmenter::new);
+
+    private Set<String> stopwords = Collections.emptySet();
+
+    @PostConstruct
+    public void init() {
+        // 第一次创建分词器时加载词典
+        segmenters.get();
+        if (stopwordsEnabled) {
+            stopwords = loadStopwords();
+        }
+        logger.info("文本分析器已初始化，停用词 {} 个", stopwords.size());
+    }
+
+    /**
+     * 分析文本，返回保留下来的词及其位置
+     */
+    public List<Token> analyze(String text) {
+        if (text == null || text.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        List<String> words = segmenters.get().sentenceProcess(normalized);
+
+        List<Token> tokens = new ArrayList<>(words.size());
+        int position = 0;
+        for (String word : words) {
+            // 空白不占用位置，使 "a b" 与 "ab" 分词后的词同样相邻
+            if (word.isBlank()) {
+                continue;
+            }
+            String term = word.toLowerCase(Locale.ROOT);
+            if (isIndexable(term)) {
+                tokens.add(new Token(term, position));
+            }
+            position++;
+        }
+        return tokens;
+    }
+
+    /**
+     * 分析文本并按词聚合位置
+     */
+    public Map<String, List<Integer>> analyzeWithPositions(String text) {
+        Map<String, List<Integer>> result = new HashMap<>();
+        for (Token token : analyze(text)) {
+            result.computeIfAbsent(token.getTerm(), k -> new ArrayList<>()).add(token.getPosition());
+        }
+        return result;
+    }
+
+    /**
+     * 批量分析，在同一线程内复用分词器
+     */
+    public List<Map<String, List<Integer>>> analyzeAll(List<String> texts) {
+        List<Map<String, List<Integer>>> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(analyzeWithPositions(text));
+        }
+        return results;
+    }
+
+    // 过滤纯空白/标点以及停用词
+    private boolean isIndexable(String term) {
+        boolean hasContent = false;
+        for (int i = 0; i < term.length() && !hasContent; i++) {
+            char c = term.charAt(i);
+            hasContent = Character.isLetterOrDigit(c);
+        }
+        return hasContent && !stopwords.contains(term);
+    }
+
+    private Set<String> loadStopwords() {
+        Set<String> result = new HashSet<>();
+        InputStream in = TextAnalyzer.class.getClassLoader().getResourceAsStream(STOPWORDS_RESOURCE);
+        if (in == null) {
+            logger.warn("未找到停用词表 {}", STOPWORDS_RESOURCE);
+            return result;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String word = line.trim().toLowerCase(Locale.ROOT);
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    result.add(word);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("加载停用词表失败", e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.searchenginedemo.analysis;
+
+/**
+ * 分析后的词及其在文本中的位置；被过滤的标点与停用词仍占用位置，保证短语偏移与索引一致
+ */
+public class Token {
+    private final String term;
+    private final int position;
+
+    public Token(String term, int position) {
+        this.term = term;
+        this.position = position;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
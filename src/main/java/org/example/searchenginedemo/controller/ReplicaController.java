@@ -0,0 +1,33 @@
+package org.example.searchenginedemo.controller;
+
+import org.example.searchenginedemo.service.ReplicaIndexService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/replica")
+@ConditionalOnProperty(name = "search.role", havingValue = "replica")
+public class ReplicaController {
+
+    private final ReplicaIndexService replicaIndexService;
+
+    public ReplicaController(ReplicaIndexService replicaIndexService) {
+        this.replicaIndexService = replicaIndexService;
+    }
+
+    /**
+     * 已应用的偏移量与延迟；未追上时返回 503，负载均衡的健康检查可直接使用
+     */
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> status() {
+        Map<String, Object> status = replicaIndexService.getStatus();
+        HttpStatus code = Boolean.TRUE.equals(status.get("caughtUp")) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(code).body(status);
+    }
+}
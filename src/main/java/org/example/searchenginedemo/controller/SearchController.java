@@ -0,0 +1,97 @@
+package org.example.searchenginedemo.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.searchenginedemo.entity.vo.SearchPage;
+import org.example.searchenginedemo.entity.vo.SearchResult;
+import org.example.searchenginedemo.service.SearchService;
+import org.example.searchenginedemo.service.SuggestService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+    // 每页结果数上限
+    private static final int MAX_PAGE_SIZE = 100;
+    // 一次导出的结果数上限
+    private static final int MAX_EXPORT_SIZE = 100_000;
+    // 补全建议数上限
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final SearchService searchService;
+    private final SuggestService suggestService;
+    private final ObjectMapper objectMapper;
+
+    public SearchController(SearchService searchService, SuggestService suggestService, ObjectMapper objectMapper) {
+        this.searchService = searchService;
+        this.suggestService = suggestService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 分页搜索，下一页把上一页返回的 nextCursor 作为 cursor 传入
+     */
+    @GetMapping
+    public SearchPage search(@RequestParam("q") String query,
+                             @RequestParam(defaultValue = "10") int size,
+                             @RequestParam(required = false) String cursor,
+                             @RequestParam(defaultValue = "true") boolean content) {
+        try {
+            return searchService.searchPage(query, clamp(size, MAX_PAGE_SIZE), cursor, content);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以 JSON 数组流式导出前 limit 个结果，边装配边写出，不在内存中拼接整个响应
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam("q") String query,
+                                                       @RequestParam(defaultValue = "1000") int limit,
+                                                       @RequestParam(defaultValue = "false") boolean content) {
+        int max = clamp(limit, MAX_EXPORT_SIZE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                searchService.export(query, max, content, chunk -> {
+                    try {
+                        for (SearchResult result : chunk) {
+                            generator.writeObject(result);
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * 前缀补全，只读取内存中的词典
+     */
+    @GetMapping("/suggest")
+    public List<String> suggest(@RequestParam("prefix") String prefix,
+                                @RequestParam(defaultValue = "10") int limit) {
+        return suggestService.suggest(prefix, clamp(limit, MAX_SUGGESTIONS));
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(1, Math.min(value, max));
+    }
+}
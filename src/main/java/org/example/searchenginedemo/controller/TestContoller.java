@@ -1,29 +1,88 @@
 package org.example.searchenginedemo.controller;
 
+import org.example.searchenginedemo.service.BulkIndexService;
 import org.example.searchenginedemo.service.IndexService;
+import org.example.searchenginedemo.service.IngestionService;
 import org.example.searchenginedemo.service.SegmentService;
+import org.example.searchenginedemo.service.TombstoneService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @RestController
+@ConditionalOnProperty(name = "search.role", havingValue = "primary", matchIfMissing = true)
 @RequestMapping("/test")
 public class TestContoller {
 
     private final SegmentService segmentService;
     private final IndexService indexService;
+    private final IngestionService ingestionService;
+    private final BulkIndexService bulkIndexService;
+    private final TombstoneService tombstoneService;
 
-    public TestContoller(SegmentService segmentService, IndexService indexService) {
+    public TestContoller(SegmentService segmentService, IndexService indexService,
+                         IngestionService ingestionService, BulkIndexService bulkIndexService,
+                         TombstoneService tombstoneService) {
         this.segmentService = segmentService;
         this.indexService = indexService;
+        this.ingestionService = ingestionService;
+        this.bulkIndexService = bulkIndexService;
+        this.tombstoneService = tombstoneService;
     }
 
     @PostMapping("/test")
     public String test(){
-        segmentService.loadDict();
+        return segmentService.loadDict() ? "success" : "already running";
+    }
+
+    @GetMapping("/ingest")
+    public Map<String, Object> ingestStats() {
+        return ingestionService.getStats();
+    }
+
+    @PostMapping("/ingest/stop")
+    public String stopIngest() {
+        ingestionService.shutdown();
         return "success";
     }
 
+    @PostMapping("/reindex")
+    public String reindex() {
+        return bulkIndexService.startRebuild() ? "success" : "already running";
+    }
+
+    @GetMapping("/reindex")
+    public Map<String, Object> reindexStatus() {
+        return bulkIndexService.getStatus();
+    }
+
+    @DeleteMapping("/pages/{id}")
+    public String deletePage(@PathVariable int id) {
+        tombstoneService.delete(id);
+        return "success";
+    }
+
+    @PostMapping("/pages/{id}/reindex")
+    public String reindexPage(@PathVariable int id) {
+        tombstoneService.reindex(id);
+        return "success";
+    }
+
+    @PostMapping("/compact")
+    public String compact() {
+        return tombstoneService.startCompaction() ? "success" : "already running";
+    }
+
+    @GetMapping("/compact")
+    public Map<String, Object> compactionStatus() {
+        return tombstoneService.getStats();
+    }
+
 }
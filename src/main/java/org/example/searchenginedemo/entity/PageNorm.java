@@ -0,0 +1,9 @@
+package org.example.searchenginedemo.entity;
+
+import lombok.Data;
+
+@Data
+public class PageNorm {
+    int id;
+    int wordCount;
+}
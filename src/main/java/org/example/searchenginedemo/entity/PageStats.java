@@ -0,0 +1,11 @@
+package org.example.searchenginedemo.entity;
+
+import lombok.Data;
+
+@Data
+public class PageStats {
+    long pageCount;
+    long totalLength;
+    // word_count 非空的文档数，用于计算平均长度
+    long lengthCount;
+}
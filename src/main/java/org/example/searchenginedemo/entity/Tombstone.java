@@ -0,0 +1,10 @@
+package org.example.searchenginedemo.entity;
+
+import lombok.Data;
+
+@Data
+public class Tombstone {
+    int docId;
+    boolean reindex;
+    boolean purged;
+}
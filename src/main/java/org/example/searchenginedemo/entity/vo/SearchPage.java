@@ -0,0 +1,35 @@
+package org.example.searchenginedemo.entity.vo;
+
+import java.util.List;
+
+public class SearchPage {
+    private final List<SearchResult> results;
+    // 下一页的游标，没有更多结果时为 null
+    private final String nextCursor;
+    private final long generation;
+    // 游标产生之后索引已更新
+    private final boolean indexChanged;
+
+    public SearchPage(List<SearchResult> results, String nextCursor, long generation, boolean indexChanged) {
+        this.results = results;
+        this.nextCursor = nextCursor;
+        this.generation = generation;
+        this.indexChanged = indexChanged;
+    }
+
+    public List<SearchResult> getResults() {
+        return results;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean isIndexChanged() {
+        return indexChanged;
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.searchenginedemo.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 全量重建索引用的外排序构建器。
+ * <p>
+ * 页面的 (term, docId, position) 先在内存中按词聚合，缓冲的位置数超过上限时
+ * 按词名排序写出一个顺串文件，每个词对应一段 {@link PostingsCodec} 格式的部分倒排表：
+ * <pre>
+ * [termCount:int] 之后 termCount 项 [term:UTF][length:int][postings:byte * length]
+ * </pre>
+ * 全部页面加入后，{@link #merge} 对所有顺串做 k 路归并，按词名升序输出完整的倒排表。
+ * addPage 可以被多个线程并发调用。
+ */
+public class BulkIndexBuilder implements Closeable {
+
+    /**
+     * 归并结果的接收方，按词名升序被调用
+     */
+    public interface TermConsumer {
+        void accept(String term, byte[] postings) throws IOException;
+    }
+
+    private final Path spillDir;
+    private final long maxBufferedPositions;
+
+    private final Map<String, PostingsWriter> buffer = new HashMap<>();
+    private long bufferedPositions;
+    private final List<Path> runs = new ArrayList<>();
+
+    public BulkIndexBuilder(Path spillDir, long maxBufferedPositions) {
+        this.spillDir = spillDir;
+        this.maxBufferedPositions = maxBufferedPositions;
+    }
+
+    public synchronized void addPage(int docId, Map<String, List<Integer>> termPositions) throws IOException {
+        for (Map.Entry<String, List<Integer>> entry : termPositions.entrySet()) {
+            PostingsWriter writer = buffer.computeIfAbsent(entry.getKey(), k -> new PostingsWriter(4));
+            for (Integer position : entry.getValue()) {
+                writer.add(docId, position);
+            }
+            bufferedPositions += entry.getValue().size();
+        }
+        if (bufferedPositions >= maxBufferedPositions) {
+            spill();
+        }
+    }
+
+    public synchronized int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * 将内存中的缓冲按词名排序写出为一个顺串
+     */
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        String[] terms = buffer.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+
+        Path run = Files.createTempFile(spillDir, "run-", ".bin");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            out.writeInt(terms.length);
+            for (String term : terms) {
+                byte[] postings = buffer.get(term).toByteArray();
+                out.writeUTF(term);
+                out.writeInt(postings.length);
+                out.write(postings);
+            }
+        }
+        runs.add(run);
+        buffer.clear();
+        bufferedPositions = 0;
+    }
+
+    /**
+     * 写出剩余缓冲并归并所有顺串；只在一个顺串中出现的词直接输出，不重新编码
+     */
+    public synchronized void merge(TermConsumer consumer) throws IOException {
+        spill();
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run, readers.size());
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            List<RunReader> same = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                String term = queue.peek().term;
+                same.clear();
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    same.add(queue.poll());
+                }
+
+                byte[] postings;
+                if (same.size() == 1) {
+                    postings = same.get(0).postings;
+                } else {
+                    PostingsWriter writer = new PostingsWriter();
+                    PostingsCursor cursor = new PostingsCursor();
+                    for (RunReader reader : same) {
+                        writer.addAll(cursor.reset(reader.postings));
+                    }
+                    postings = writer.toByteArray();
+                }
+                consumer.accept(term, postings);
+
+                for (RunReader reader : same) {
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * 删除所有顺串文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        buffer.clear();
+        bufferedPositions = 0;
+    }
+
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream in;
+        private final int order;
+        private int remaining;
+        private String term;
+        private byte[] postings;
+
+        RunReader(Path run, int order) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            this.order = order;
+            this.remaining = in.readInt();
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            term = in.readUTF();
+            postings = new byte[in.readInt()];
+            in.readFully(postings);
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int cmp = term.compareTo(other.term);
+            return cmp != 0 ? cmp : Integer.compare(order, other.order);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.searchenginedemo.index;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * BM25 使用的语料统计(文档数与总长度)，以不可变快照发布。
+ * 写入方通过 {@link #add} 增量更新，读取方拿到的快照内部始终一致，无需加锁，也不访问数据库。
+ * 词的文档频率直接取自倒排表头部，与正在评分的倒排表天然一致，不在这里维护。
+ */
+public class CorpusStats {
+
+    public record Snapshot(long docCount, long totalLength, boolean loaded) {
+
+        public double averageLength() {
+            return docCount > 0 ? (double) totalLength / docCount : 0.0;
+        }
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, 0, false));
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * 应用文档数与总长度的增量，调用方应批量累计后再调用以减少快照的创建
+     */
+    public void add(long docDelta, long lengthDelta) {
+        if (docDelta == 0 && lengthDelta == 0) {
+            return;
+        }
+        current.updateAndGet(s -> new Snapshot(s.docCount() + docDelta, s.totalLength() + lengthDelta, s.loaded()));
+    }
+
+    /**
+     * 首次全量加载完成后调用，此后快照可以代替数据库统计
+     */
+    public void markLoaded() {
+        current.updateAndGet(s -> s.loaded() ? s : new Snapshot(s.docCount(), s.totalLength(), true));
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.searchenginedemo.index;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 按影响值排序的倒排表格式，与 {@link PostingsCodec} 并存于本地索引段：
+ * <pre>
+ * [docCount:vint][levelCount:vint]
+ * 按影响值降序的各级: [impact:byte][count:vint][docDelta:vint * count]
+ * </pre>
+ * 同一级内 docId 升序差分编码。查询按影响值从高到低读取，
+ * 剩余各级的影响值之和不足以改变前K名时即可停止。
+ */
+public final class ImpactCodec {
+
+    private ImpactCodec() {
+    }
+
+    /**
+     * 由 docId 有序的倒排表生成影响值有序的倒排表，docLengths 返回文档长度，未知时返回 0
+     */
+    public static byte[] encode(PostingsCursor cursor, ImpactModel model, IntUnaryOperator docLengths) {
+        int docCount = cursor.docCount();
+        // 按影响值分桶，桶内保持 docId 升序
+        int[] counts = new int[ImpactModel.LEVELS + 1];
+        int[] docs = new int[docCount];
+        byte[] impacts = new byte[docCount];
+        int n = 0;
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            int impact = model.quantize(cursor.freq(), docLengths.applyAsInt(doc));
+            docs[n] = doc;
+            impacts[n] = (byte) impact;
+            counts[impact]++;
+            n++;
+        }
+
+        int[] starts = new int[ImpactModel.LEVELS + 2];
+        int levelCount = 0;
+        for (int impact = ImpactModel.LEVELS; impact >= 1; impact--) {
+            starts[impact - 1] = starts[impact] + counts[impact];
+            if (counts[impact] > 0) {
+                levelCount++;
+            }
+        }
+        // 高影响值的桶排在前面：impact 级的文档位于 [starts[impact], starts[impact - 1])
+        int[] sorted = new int[n];
+        int[] fill = Arrays.copyOf(starts, starts.length);
+        for (int i = 0; i < n; i++) {
+            sorted[fill[impacts[i] & 0xFF]++] = docs[i];
+        }
+
+        PostingsCodec.ByteSink out = new PostingsCodec.ByteSink(n * 2 + 8);
+        out.writeVInt(n);
+        out.writeVInt(levelCount);
+        for (int impact = ImpactModel.LEVELS; impact >= 1; impact--) {
+            if (counts[impact] == 0) {
+                continue;
+            }
+            out.writeByte(impact);
+            out.writeVInt(counts[impact]);
+            int prev = 0;
+            for (int i = starts[impact]; i < starts[impact - 1]; i++) {
+                out.writeVInt(sorted[i] - prev);
+                prev = sorted[i];
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.searchenginedemo.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ImpactCodec} 格式的解码游标：按影响值降序逐级读取，级内按 docId 升序读取
+ */
+public final class ImpactCursor {
+    private ByteBuffer buffer;
+    private ImpactModel model;
+
+    private int docCount;
+    private int levelsLeft;
+    private int ptr;
+
+    private int impact;
+    private int levelSize;
+    private int docsLeft;
+    private int doc;
+
+    // readVInt 读取结束后的偏移
+    private int vIntEnd;
+
+    /**
+     * 从 buffer 的绝对偏移 offset 处开始解码，不修改 buffer 的 position
+     */
+    public ImpactCursor reset(ByteBuffer buffer, int offset, ImpactModel model) {
+        this.buffer = buffer;
+        this.model = model;
+        docCount = readVInt(offset);
+        levelsLeft = readVInt(vIntEnd);
+        ptr = vIntEnd;
+        impact = 0;
+        levelSize = 0;
+        docsLeft = 0;
+        return this;
+    }
+
+    public ImpactModel model() {
+        return model;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    /**
+     * 移动到下一级，返回其影响值；没有更多级时返回 0。当前级未读完的文档被跳过
+     */
+    public int nextLevel() {
+        while (docsLeft > 0) {
+            nextDoc();
+        }
+        if (levelsLeft == 0) {
+            return impact = 0;
+        }
+        impact = buffer.get(ptr) & 0xFF;
+        levelSize = readVInt(ptr + 1);
+        ptr = vIntEnd;
+        docsLeft = levelSize;
+        doc = 0;
+        levelsLeft--;
+        return impact;
+    }
+
+    public int impact() {
+        return impact;
+    }
+
+    public int levelSize() {
+        return levelSize;
+    }
+
+    /**
+     * 当前级的下一个文档，每级最多调用 levelSize() 次
+     */
+    public int nextDoc() {
+        if (docsLeft == 0) {
+            throw new IllegalStateException("当前级的文档已读完");
+        }
+        doc += readVInt(ptr);
+        ptr = vIntEnd;
+        docsLeft--;
+        return doc;
+    }
+
+    private int readVInt(int offset) {
+        byte b = buffer.get(offset++);
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get(offset++);
+            value |= (b & 0x7F) << shift;
+        }
+        vIntEnd = offset;
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.searchenginedemo.index;
+
+/**
+ * 影响值量化模型：在建段时把 BM25 的词频-长度归一化部分
+ * (k1+1)·tf / (k1·(1-b+b·dl/avgdl) + tf) 量化为 1~255 的整数。
+ * IDF 与文档频率有关，段内无法得到全局值，因此不计入影响值，查询时再按词加权。
+ * k1、b 与平均文档长度在一次建段中固定，随段一起保存。
+ */
+public final class ImpactModel {
+    // 量化级数，影响值占一个字节
+    public static final int LEVELS = 255;
+
+    private final double k1;
+    private final double b;
+    private final double avgDocLength;
+
+    public ImpactModel(double k1, double b, double avgDocLength) {
+        this.k1 = k1;
+        this.b = b;
+        this.avgDocLength = avgDocLength;
+    }
+
+    public double getK1() {
+        return k1;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    public double getAvgDocLength() {
+        return avgDocLength;
+    }
+
+    /**
+     * 量化后的影响值，未知长度(0)按平均长度处理；有词频的文档至少为 1
+     */
+    public int quantize(int termFrequency, int docLength) {
+        double normalizedLength = docLength > 0 && avgDocLength > 0 ? docLength / avgDocLength : 1.0;
+        double weight = (k1 + 1.0) * termFrequency / (k1 * (1.0 - b + b * normalizedLength) + termFrequency);
+        int impact = (int) Math.ceil(weight / (k1 + 1.0) * LEVELS);
+        return Math.max(1, Math.min(LEVELS, impact));
+    }
+
+    /**
+     * 每一级影响值对应的 BM25 词频分量，乘以 IDF 即为得分
+     */
+    public double scale() {
+        return (k1 + 1.0) / LEVELS;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.searchenginedemo.index;
+
+import org.example.searchenginedemo.message.PageTerms;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 索引写入缓冲：在一个时间/容量窗口内按词聚合倒排项，刷新时每个词只写一次。
+ * 每个词累积为 ",pageId:pos,pageId:pos" 形式的文本尾部，可直接追加到 word_dict.positions。
+ */
+public class IndexBuffer {
+    private Map<String, StringBuilder> tails = new HashMap<>();
+    private long positionCount;
+    private long firstAddedAt;
+
+    public synchronized void add(PageTerms message) {
+        if (tails.isEmpty()) {
+            firstAddedAt = System.currentTimeMillis();
+        }
+        String pageId = String.valueOf(message.getPageId());
+        for (Map.Entry<String, int[]> entry : message.getTermPositions().entrySet()) {
+            StringBuilder tail = tails.computeIfAbsent(entry.getKey(), k -> new StringBuilder());
+            for (int pos : entry.getValue()) {
+                tail.append(',').append(pageId).append(':').append(pos);
+            }
+            positionCount += entry.getValue().length;
+        }
+    }
+
+    /**
+     * 取出全部已缓冲的内容并清空缓冲区
+     */
+    public synchronized Map<String, String> drain() {
+        Map<String, String> drained = new HashMap<>(tails.size() * 2);
+        for (Map.Entry<String, StringBuilder> entry : tails.entrySet()) {
+            drained.put(entry.getKey(), entry.getValue().toString());
+        }
+        tails = new HashMap<>();
+        positionCount = 0;
+        return drained;
+    }
+
+    /**
+     * 写入失败时放回未写入的内容，等待下次刷新
+     */
+    public synchronized void restore(Map<String, String> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (tails.isEmpty()) {
+            firstAddedAt = System.currentTimeMillis();
+        }
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            tails.computeIfAbsent(entry.getKey(), k -> new StringBuilder()).append(entry.getValue());
+            positionCount += countPositions(entry.getValue());
+        }
+    }
+
+    public synchronized int termCount() {
+        return tails.size();
+    }
+
+    public synchronized long positionCount() {
+        return positionCount;
+    }
+
+    /**
+     * 最早一条未刷新内容已等待的毫秒数，缓冲区为空时返回0
+     */
+    public synchronized long ageMillis() {
+        return tails.isEmpty() ? 0 : System.currentTimeMillis() - firstAddedAt;
+    }
+
+    private static int countPositions(String tail) {
+        int count = 0;
+        for (int i = 0; i < tail.length(); i++) {
+            if (tail.charAt(i) == ':') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.searchenginedemo.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 索引代数：每次成功写入索引后递增，依赖索引内容的缓存以此判断是否过期
+ */
+@Component
+public class IndexGeneration {
+    private final AtomicLong generation = new AtomicLong();
+
+    public long current() {
+        return generation.get();
+    }
+
+    public long increment() {
+        return generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.searchenginedemo.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * 已删除(包括等待重新索引)的文档位图。
+ * 删除很少发生，采用写时复制：发布出去的位图不再修改，查询线程无锁读取快照。
+ */
+@Component
+public class LiveDocs {
+    private volatile BitSet deleted = new BitSet();
+
+    public boolean isDeleted(int docId) {
+        return deleted.get(docId);
+    }
+
+    /**
+     * 当前快照，调用方不能修改
+     */
+    public BitSet deletedDocs() {
+        return deleted;
+    }
+
+    public int deletedCount() {
+        return deleted.cardinality();
+    }
+
+    public synchronized void delete(int docId) {
+        BitSet updated = (BitSet) deleted.clone();
+        updated.set(docId);
+        deleted = updated;
+    }
+
+    public synchronized void restore(Collection<Integer> docIds) {
+        BitSet updated = (BitSet) deleted.clone();
+        for (int docId : docIds) {
+            updated.clear(docId);
+        }
+        deleted = updated;
+    }
+
+    public synchronized void reset(BitSet docIds) {
+        deleted = (BitSet) docIds.clone();
+    }
+
+    public synchronized void deleteAll(BitSet docIds) {
+        BitSet updated = (BitSet) deleted.clone();
+        updated.or(docIds);
+        deleted = updated;
+    }
+
+    /**
+     * 把已删除文档并入查询的排除位图；两者都为空时返回 null，求值时不做任何检查
+     *
+     * @param excluded 查询自己的排除位图，可以为 null，不为 null 时会被修改
+     */
+    public BitSet withDeleted(BitSet excluded) {
+        BitSet current = deleted;
+        if (current.isEmpty()) {
+            return excluded;
+        }
+        if (excluded == null) {
+            return current;
+        }
+        excluded.or(current);
+        return excluded;
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.searchenginedemo.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 二进制倒排表格式（版本1），存放于 word_dict.postings 列：
+ * <pre>
+ * [version:byte][docCount:vint][maxFreq:vint][blockCount:vint][skipBytes:vint]
+ * 跳表: blockCount 项 [lastDocDelta:vint][blockBytes:vint]
+ * 数据块: 每块最多 BLOCK_SIZE 个文档，每个文档为
+ *        [docDelta:vint][freq:vint][posBytes:vint][posDelta:vint * freq]
+ * </pre>
+ * docId 升序并做差分编码，每个文档的位置同样升序差分编码。
+ */
+public final class PostingsCodec {
+
+    public static final byte VERSION = 1;
+
+    // 每个跳表块包含的文档数
+    public static final int BLOCK_SIZE = 128;
+
+    private PostingsCodec() {
+    }
+
+    /**
+     * 将旧的文本格式 ",12:3,12:9,40:1" 直接转换为二进制格式
+     */
+    public static byte[] fromLegacy(CharSequence legacy) {
+        PostingsWriter writer = new PostingsWriter();
+        writer.addLegacy(legacy);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 合并已压缩的主体与尚未折叠的文本尾部；没有尾部时直接返回主体
+     */
+    public static byte[] merge(byte[] base, CharSequence tail) {
+        boolean hasTail = tail != null && tail.length() > 0;
+        if (!hasTail && base != null) {
+            return base;
+        }
+
+        PostingsWriter writer = new PostingsWriter();
+        if (base != null) {
+            writer.addAll(new PostingsCursor().reset(base));
+        }
+        if (hasTail) {
+            writer.addLegacy(tail);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 去掉 docs 中的文档，其余文档的位置重新排序去重后编码；
+     * 倒排表不包含其中任何文档时返回原数组，调用方可据此判断是否需要写回
+     */
+    public static byte[] removeDocs(byte[] postings, BitSet docs) {
+        PostingsCursor cursor = new PostingsCursor().reset(postings);
+        boolean found = false;
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS && !found; doc = cursor.nextDoc()) {
+            found = docs.get(doc);
+        }
+        if (!found) {
+            return postings;
+        }
+
+        PostingsWriter writer = new PostingsWriter();
+        cursor.reset(postings);
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            if (docs.get(doc)) {
+                continue;
+            }
+            for (int i = cursor.freq(); i > 0; i--) {
+                writer.add(doc, cursor.nextPosition());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 从倒排表开头读取文档数，只需要头部的前几个字节
+     */
+    public static int readDocCount(byte[] head) {
+        if (head == null || head.length < 2 || head[0] != VERSION) {
+            return 0;
+        }
+        int value = 0;
+        for (int i = 1, shift = 0; i < head.length && shift < 32; i++, shift += 7) {
+            byte b = head[i];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 可增长的字节缓冲，仅用于编码
+     */
+    static final class ByteSink {
+        private byte[] bytes;
+        private int length;
+
+        ByteSink(int initialCapacity) {
+            this.bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(length + 1);
+            bytes[length++] = (byte) b;
+        }
+
+        void writeVInt(int value) {
+            ensureCapacity(length + 5);
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeBytes(ByteSink other) {
+            ensureCapacity(length + other.length);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            length += other.length;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+            }
+        }
+    }
+}
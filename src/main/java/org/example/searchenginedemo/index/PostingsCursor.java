@@ -0,0 +1,186 @@
+package org.example.searchenginedemo.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PostingsCodec} 格式的流式解码游标。
+ * 按 docId 升序迭代，通过基本类型返回 docId、词频和位置，迭代过程不分配对象；
+ * 同一个游标可以通过 reset 重复使用。
+ */
+public final class PostingsCursor {
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private ByteBuffer buffer;
+
+    // 头部信息
+    private int docCount;
+    private int maxFreq;
+    private int blockCount;
+
+    // 跳表状态
+    private int skipPtr;
+    private int blocksLoaded;
+    private int blockLastDoc;
+    private int prevBlockLastDoc;
+    private int nextBlockStart;
+    private int blockEnd;
+
+    // 当前文档状态
+    private int dataPtr;
+    private int docsRead;
+    private int doc;
+    private int freq;
+    private int posPtr;
+    private int posLeft;
+    private int pos;
+
+    // readVInt 读取结束后的偏移
+    private int vIntEnd;
+
+    public PostingsCursor reset(byte[] postings) {
+        return reset(ByteBuffer.wrap(postings), 0);
+    }
+
+    /**
+     * 从 buffer 的绝对偏移 offset 处开始解码，不修改 buffer 的 position
+     */
+    public PostingsCursor reset(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+
+        byte version = buffer.get(offset);
+        if (version != PostingsCodec.VERSION) {
+            throw new IllegalArgumentException("不支持的倒排表版本: " + version);
+        }
+        docCount = readVInt(offset + 1);
+        maxFreq = readVInt(vIntEnd);
+        blockCount = readVInt(vIntEnd);
+        int skipBytes = readVInt(vIntEnd);
+
+        skipPtr = vIntEnd;
+        nextBlockStart = skipPtr + skipBytes;
+        blockEnd = nextBlockStart;
+        blocksLoaded = 0;
+        blockLastDoc = -1;
+        prevBlockLastDoc = -1;
+
+        dataPtr = nextBlockStart;
+        docsRead = 0;
+        doc = -1;
+        freq = 0;
+        posLeft = 0;
+        return this;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public int maxFreq() {
+        return maxFreq;
+    }
+
+    public int docId() {
+        return doc;
+    }
+
+    public int freq() {
+        return freq;
+    }
+
+    /**
+     * 移动到下一个文档，返回其 docId；没有更多文档时返回 NO_MORE_DOCS
+     */
+    public int nextDoc() {
+        if (docsRead >= docCount) {
+            posLeft = 0;
+            return doc = NO_MORE_DOCS;
+        }
+        if (dataPtr >= blockEnd) {
+            loadNextBlock();
+        }
+
+        doc += readVInt(dataPtr);
+        freq = readVInt(vIntEnd);
+        int posBytes = readVInt(vIntEnd);
+        posPtr = vIntEnd;
+        dataPtr = posPtr + posBytes;
+        posLeft = freq;
+        pos = 0;
+        docsRead++;
+        return doc;
+    }
+
+    /**
+     * 移动到第一个 docId &gt;= target 的文档，利用跳表整块跳过
+     */
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+
+        if (blockLastDoc < target) {
+            // 当前块内不可能存在目标，沿跳表跳过整块
+            while (blocksLoaded < blockCount) {
+                int lastDocDelta = readVInt(skipPtr);
+                int blockBytes = readVInt(vIntEnd);
+                if (blockLastDoc + lastDocDelta >= target) {
+                    break;
+                }
+                skipPtr = vIntEnd;
+                blockLastDoc += lastDocDelta;
+                nextBlockStart += blockBytes;
+                blocksLoaded++;
+            }
+            if (blocksLoaded == blockCount) {
+                docsRead = docCount;
+                posLeft = 0;
+                return doc = NO_MORE_DOCS;
+            }
+            loadNextBlock();
+            doc = prevBlockLastDoc;
+            docsRead = (blocksLoaded - 1) * PostingsCodec.BLOCK_SIZE;
+        }
+
+        while (nextDoc() < target) {
+            // 块内线性扫描
+        }
+        return doc;
+    }
+
+    /**
+     * 返回当前文档的下一个位置，每个文档最多调用 freq() 次
+     */
+    public int nextPosition() {
+        if (posLeft == 0) {
+            throw new IllegalStateException("当前文档的位置已读完");
+        }
+        pos += readVInt(posPtr);
+        posPtr = vIntEnd;
+        posLeft--;
+        return pos;
+    }
+
+    private void loadNextBlock() {
+        int lastDocDelta = readVInt(skipPtr);
+        int blockBytes = readVInt(vIntEnd);
+        skipPtr = vIntEnd;
+
+        prevBlockLastDoc = blockLastDoc;
+        blockLastDoc += lastDocDelta;
+        dataPtr = nextBlockStart;
+        blockEnd = nextBlockStart + blockBytes;
+        nextBlockStart = blockEnd;
+        blocksLoaded++;
+    }
+
+    private int readVInt(int offset) {
+        byte b = buffer.get(offset++);
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get(offset++);
+            value |= (b & 0x7F) << shift;
+        }
+        vIntEnd = offset;
+        return value;
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.searchenginedemo.index;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 查询时读取倒排表的后端。返回的 ByteBuffer 在偏移 0 处为 {@link PostingsCodec} 格式的倒排表开头，
+ * 调用方只能通过绝对位置读取，不能修改。
+ */
+public interface PostingsSource {
+
+    /**
+     * 返回各词的倒排表，不存在的词不会出现在结果中
+     */
+    Map<String, ByteBuffer> getPostings(Collection<String> terms);
+}
@@ -0,0 +1,186 @@
+package org.example.searchenginedemo.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 倒排表构建器：收集 (docId, position) 对，排序去重后按 {@link PostingsCodec} 格式编码。
+ * 内部以 long[] 存储 docId &lt;&lt; 32 | position，避免装箱。
+ */
+public class PostingsWriter {
+    private long[] entries;
+    private int size;
+
+    public PostingsWriter() {
+        this(16);
+    }
+
+    public PostingsWriter(int initialCapacity) {
+        this.entries = new long[Math.max(1, initialCapacity)];
+    }
+
+    public void add(int docId, int position) {
+        if (docId < 0 || position < 0) {
+            throw new IllegalArgumentException("docId和位置不能为负数: " + docId + ":" + position);
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length << 1);
+        }
+        entries[size++] = ((long) docId << 32) | position;
+    }
+
+    /**
+     * 解析旧的文本格式 "1:3,2:5,3:2"（允许前导逗号），无效片段会被忽略
+     */
+    public void addLegacy(CharSequence legacy) {
+        if (legacy == null) {
+            return;
+        }
+
+        int length = legacy.length();
+        int i = 0;
+        while (i < length) {
+            // 解析一个 "docId:pos" 片段
+            long docId = 0;
+            long pos = 0;
+            int docDigits = 0;
+            int posDigits = 0;
+            boolean colon = false;
+            boolean valid = true;
+
+            for (; i < length; i++) {
+                char c = legacy.charAt(i);
+                if (c == ',') {
+                    break;
+                }
+                if (c == ':') {
+                    valid &= !colon;
+                    colon = true;
+                } else if (c >= '0' && c <= '9') {
+                    if (colon) {
+                        pos = pos * 10 + (c - '0');
+                        posDigits++;
+                    } else {
+                        docId = docId * 10 + (c - '0');
+                        docDigits++;
+                    }
+                } else if (c != ' ') {
+                    valid = false;
+                }
+            }
+            i++;
+
+            if (valid && colon && docDigits > 0 && docDigits <= 10 && posDigits > 0 && posDigits <= 10
+                    && docId <= Integer.MAX_VALUE && pos <= Integer.MAX_VALUE) {
+                add((int) docId, (int) pos);
+            }
+        }
+    }
+
+    /**
+     * 将游标剩余的全部倒排项加入构建器
+     */
+    public void addAll(PostingsCursor cursor) {
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            for (int i = cursor.freq(); i > 0; i--) {
+                add(doc, cursor.nextPosition());
+            }
+        }
+    }
+
+    /**
+     * 将游标剩余的倒排项加入构建器，跳过 skipDocs 中的文档
+     *
+     * @param skipDocs 可以为 null
+     */
+    public void addAll(PostingsCursor cursor, BitSet skipDocs) {
+        if (skipDocs == null || skipDocs.isEmpty()) {
+            addAll(cursor);
+            return;
+        }
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            if (skipDocs.get(doc)) {
+                continue;
+            }
+            for (int i = cursor.freq(); i > 0; i--) {
+                add(doc, cursor.nextPosition());
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public byte[] toByteArray() {
+        Arrays.sort(entries, 0, size);
+
+        PostingsCodec.ByteSink data = new PostingsCodec.ByteSink(size * 3);
+        PostingsCodec.ByteSink skip = new PostingsCodec.ByteSink(16);
+        PostingsCodec.ByteSink positions = new PostingsCodec.ByteSink(64);
+
+        int docCount = 0;
+        int maxFreq = 0;
+        int blockCount = 0;
+        int blockStart = 0;
+        int prevDoc = -1;
+        int prevBlockLastDoc = -1;
+
+        int i = 0;
+        while (i < size) {
+            int doc = (int) (entries[i] >>> 32);
+
+            // 收集该文档的所有位置（去重）
+            positions.reset();
+            int freq = 0;
+            int prevPos = 0;
+            long prevEntry = -1;
+            for (; i < size && (int) (entries[i] >>> 32) == doc; i++) {
+                if (entries[i] == prevEntry) {
+                    continue;
+                }
+                prevEntry = entries[i];
+                int pos = (int) entries[i];
+                positions.writeVInt(pos - prevPos);
+                prevPos = pos;
+                freq++;
+            }
+
+            data.writeVInt(doc - prevDoc);
+            data.writeVInt(freq);
+            data.writeVInt(positions.length());
+            data.writeBytes(positions);
+
+            prevDoc = doc;
+            docCount++;
+            maxFreq = Math.max(maxFreq, freq);
+
+            // 块满或到达末尾时写出跳表项
+            if (docCount % PostingsCodec.BLOCK_SIZE == 0 || i == size) {
+                skip.writeVInt(doc - prevBlockLastDoc);
+                skip.writeVInt(data.length() - blockStart);
+                prevBlockLastDoc = doc;
+                blockStart = data.length();
+                blockCount++;
+            }
+        }
+
+        PostingsCodec.ByteSink out = new PostingsCodec.ByteSink(data.length() + skip.length() + 16);
+        out.writeByte(PostingsCodec.VERSION);
+        out.writeVInt(docCount);
+        out.writeVInt(maxFreq);
+        out.writeVInt(blockCount);
+        out.writeVInt(skip.length());
+        out.writeBytes(skip);
+        out.writeBytes(data);
+        return out.toByteArray();
+    }
+}
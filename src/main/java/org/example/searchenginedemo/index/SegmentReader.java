@@ -0,0 +1,149 @@
+package org.example.searchenginedemo.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * 只读的本地索引段，格式见 {@link SegmentWriter}。
+ * 词典常驻内存并二分查找，倒排文件通过 MappedByteBuffer 映射，读取时依赖操作系统页缓存；
+ * 返回的倒排表是映射区域上的只读切片，不复制数据。
+ * 段包含影响值文件时同样映射，供按影响值求值使用。
+ */
+public class SegmentReader {
+    private final Path dir;
+    private final String[] terms;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final MappedByteBuffer postings;
+
+    // 影响值，段中没有时为 null
+    private ImpactModel impactModel;
+    private int[] impactOffsets;
+    private int[] impactLengths;
+    private MappedByteBuffer impacts;
+
+    private SegmentReader(Path dir, String[] terms, int[] offsets, int[] lengths, MappedByteBuffer postings) {
+        this.dir = dir;
+        this.terms = terms;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.postings = postings;
+    }
+
+    public static SegmentReader open(Path dir) throws IOException {
+        String[] terms;
+        int[] offsets;
+        int[] lengths;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(dir.resolve(SegmentWriter.TERMS_FILE)), 1 << 16))) {
+            int count = in.readInt();
+            terms = new String[count];
+            offsets = new int[count];
+            lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = Math.toIntExact(in.readLong());
+                lengths[i] = in.readInt();
+            }
+        }
+
+        SegmentReader reader = new SegmentReader(dir, terms, offsets, lengths, map(dir.resolve(SegmentWriter.POSTINGS_FILE)));
+        if (Files.exists(dir.resolve(SegmentWriter.IMPACTS_DICT_FILE))) {
+            reader.openImpacts();
+        }
+        return reader;
+    }
+
+    private void openImpacts() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(dir.resolve(SegmentWriter.IMPACTS_DICT_FILE)), 1 << 16))) {
+            ImpactModel model = new ImpactModel(in.readDouble(), in.readDouble(), in.readDouble());
+            int count = in.readInt();
+            if (count != terms.length) {
+                throw new IOException("影响值词典与词典的词数不一致: " + dir);
+            }
+            impactOffsets = new int[count];
+            impactLengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                impactOffsets[i] = in.readInt();
+                impactLengths[i] = in.readInt();
+            }
+            impactModel = model;
+        }
+        impacts = map(dir.resolve(SegmentWriter.IMPACTS_FILE));
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 映射在通道关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    public String term(int ord) {
+        return terms[ord];
+    }
+
+    public long postingsBytes() {
+        return postings.capacity();
+    }
+
+    /**
+     * 返回词的序号，不存在时返回负数
+     */
+    public int ord(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    /**
+     * 第 ord 个词的倒排表，偏移 0 处为倒排表开头
+     */
+    public ByteBuffer postings(int ord) {
+        return postings.slice(offsets[ord], lengths[ord]).asReadOnlyBuffer();
+    }
+
+    /**
+     * 段建立时使用的影响值模型，段中没有影响值时返回 null
+     */
+    public ImpactModel impactModel() {
+        return impactModel;
+    }
+
+    /**
+     * 第 ord 个词按影响值排序的倒排表，格式见 {@link ImpactCodec}
+     */
+    public ByteBuffer impacts(int ord) {
+        return impacts.slice(impactOffsets[ord], impactLengths[ord]).asReadOnlyBuffer();
+    }
+
+    byte[] postingsBytes(int ord) {
+        byte[] bytes = new byte[lengths[ord]];
+        postings.get(offsets[ord], bytes);
+        return bytes;
+    }
+
+    public void forEachNorm(BiConsumer<Integer, Integer> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(dir.resolve(SegmentWriter.NORMS_FILE)), 1 << 16))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                consumer.accept(in.readInt(), in.readInt());
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.searchenginedemo.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 写出一个不可变的本地索引段，目录中包含三个文件：
+ * <pre>
+ * postings.bin  各词的 {@link PostingsCodec} 倒排表首尾相接
+ * terms.dict    [termCount:int] 之后按词名升序 [term:UTF][offset:long][length:int]
+ * norms.bin     [docCount:int] 之后按 docId 升序 [docId:int][length:int]
+ * </pre>
+ * 启用影响值时另外写出两个文件，词的顺序与 terms.dict 相同：
+ * <pre>
+ * impacts.bin   各词的 {@link ImpactCodec} 倒排表首尾相接
+ * impacts.dict  [k1:double][b:double][avgDocLength:double][termCount:int] 之后 [offset:int][length:int]
+ * </pre>
+ * 文件先写入临时目录，{@link #commit} 时整体改名为目标目录，读者不会看到写了一半的段。
+ */
+public class SegmentWriter implements Closeable {
+    static final String POSTINGS_FILE = "postings.bin";
+    static final String TERMS_FILE = "terms.dict";
+    static final String NORMS_FILE = "norms.bin";
+    static final String IMPACTS_FILE = "impacts.bin";
+    static final String IMPACTS_DICT_FILE = "impacts.dict";
+
+    private final Path target;
+    private final Path tmp;
+    private final DataOutputStream postings;
+    private long offset;
+
+    private final Map<String, long[]> terms = new HashMap<>();
+    private final Map<Integer, Integer> norms = new HashMap<>();
+    private boolean committed;
+
+    // 影响值，未启用时为 null
+    private ImpactModel impactModel;
+    private IntUnaryOperator docLengths;
+    private DataOutputStream impacts;
+    private long impactOffset;
+    private final Map<String, long[]> impactEntries = new HashMap<>();
+
+    public SegmentWriter(Path target) throws IOException {
+        this.target = target;
+        this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(tmp);
+        this.postings = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp.resolve(POSTINGS_FILE)), 1 << 16));
+    }
+
+    /**
+     * 同时写出按影响值排序的倒排表，需在写入第一个词之前调用
+     *
+     * @param docLengths 返回文档长度，未知时返回 0
+     */
+    public void enableImpacts(ImpactModel model, IntUnaryOperator docLengths) throws IOException {
+        if (!terms.isEmpty()) {
+            throw new IllegalStateException("已写入词后不能再启用影响值");
+        }
+        this.impactModel = model;
+        this.docLengths = docLengths;
+        this.impacts = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp.resolve(IMPACTS_FILE)), 1 << 16));
+    }
+
+    /**
+     * 写入一个词的完整倒排表，每个词只能写入一次，顺序任意
+     */
+    public void addTerm(String term, byte[] termPostings) throws IOException {
+        if (terms.containsKey(term)) {
+            throw new IllegalArgumentException("词重复写入: " + term);
+        }
+        if (offset + termPostings.length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("索引段的倒排文件不能超过 2GB");
+        }
+        postings.write(termPostings);
+        terms.put(term, new long[]{offset, termPostings.length});
+        offset += termPostings.length;
+
+        if (impactModel != null) {
+            byte[] termImpacts = ImpactCodec.encode(new PostingsCursor().reset(termPostings), impactModel, docLengths);
+            impacts.write(termImpacts);
+            impactEntries.put(term, new long[]{impactOffset, termImpacts.length});
+            impactOffset += termImpacts.length;
+        }
+    }
+
+    public void addNorm(int docId, int length) {
+        norms.put(docId, length);
+    }
+
+    public long postingsBytes() {
+        return offset;
+    }
+
+    /**
+     * 写出词典与文档长度文件，并将临时目录改名为目标目录
+     */
+    public void commit() throws IOException {
+        postings.close();
+
+        String[] sorted = terms.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp.resolve(TERMS_FILE)), 1 << 16))) {
+            out.writeInt(sorted.length);
+            for (String term : sorted) {
+                long[] entry = terms.get(term);
+                out.writeUTF(term);
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+            }
+        }
+
+        if (impactModel != null) {
+            writeImpactsDict(sorted);
+        }
+
+        int[] docIds = new int[norms.size()];
+        int i = 0;
+        for (Integer docId : norms.keySet()) {
+            docIds[i++] = docId;
+        }
+        Arrays.sort(docIds);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp.resolve(NORMS_FILE)), 1 << 16))) {
+            out.writeInt(docIds.length);
+            for (int docId : docIds) {
+                out.writeInt(docId);
+                out.writeInt(norms.get(docId));
+            }
+        }
+
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    private void writeImpactsDict(String[] sorted) throws IOException {
+        impacts.close();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp.resolve(IMPACTS_DICT_FILE)), 1 << 16))) {
+            out.writeDouble(impactModel.getK1());
+            out.writeDouble(impactModel.getB());
+            out.writeDouble(impactModel.getAvgDocLength());
+            out.writeInt(sorted.length);
+            for (String term : sorted) {
+                long[] entry = impactEntries.get(term);
+                out.writeInt(Math.toIntExact(entry[0]));
+                out.writeInt((int) entry[1]);
+            }
+        }
+    }
+
+    public static void merge(List<SegmentReader> readers, Path target) throws IOException {
+        merge(readers, target, null, null);
+    }
+
+    /**
+     * 将多个段合并为一个新段：同一个词的倒排表合并去重，文档长度以后面的段为准。
+     * model 不为 null 时按新的模型重新计算影响值
+     */
+    public static void merge(List<SegmentReader> readers, Path target,
+                             ImpactModel model, IntUnaryOperator docLengths) throws IOException {
+        merge(readers, null, target, model, docLengths);
+    }
+
+    /**
+     * 同上，合并时丢弃各段中已被取代的文档(倒排项与文档长度)
+     *
+     * @param deletes 与 readers 一一对应的已删除文档，为 null 或其中的元素为 null 时不删除
+     */
+    public static void merge(List<SegmentReader> readers, List<BitSet> deletes, Path target,
+                             ImpactModel model, IntUnaryOperator docLengths) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            if (model != null) {
+                writer.enableImpacts(model, docLengths);
+            }
+            PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> {
+                int cmp = readers.get(a[0]).term(a[1]).compareTo(readers.get(b[0]).term(b[1]));
+                return cmp != 0 ? cmp : Integer.compare(a[0], b[0]);
+            });
+            for (int r = 0; r < readers.size(); r++) {
+                if (readers.get(r).termCount() > 0) {
+                    queue.add(new int[]{r, 0});
+                }
+            }
+
+            List<int[]> same = new ArrayList<>();
+            PostingsCursor cursor = new PostingsCursor();
+            while (!queue.isEmpty()) {
+                String term = readers.get(queue.peek()[0]).term(queue.peek()[1]);
+                same.clear();
+                while (!queue.isEmpty() && readers.get(queue.peek()[0]).term(queue.peek()[1]).equals(term)) {
+                    same.add(queue.poll());
+                }
+
+                if (same.size() == 1 && deletesOf(deletes, same.get(0)[0]) == null) {
+                    writer.addTerm(term, readers.get(same.get(0)[0]).postingsBytes(same.get(0)[1]));
+                } else {
+                    PostingsWriter postingsWriter = new PostingsWriter();
+                    for (int[] entry : same) {
+                        postingsWriter.addAll(cursor.reset(readers.get(entry[0]).postings(entry[1]), 0),
+                                deletesOf(deletes, entry[0]));
+                    }
+                    // 只出现在已删除文档中的词不再写入
+                    if (!postingsWriter.isEmpty()) {
+                        writer.addTerm(term, postingsWriter.toByteArray());
+                    }
+                }
+
+                for (int[] entry : same) {
+                    if (++entry[1] < readers.get(entry[0]).termCount()) {
+                        queue.add(entry);
+                    }
+                }
+            }
+
+            for (int r = 0; r < readers.size(); r++) {
+                BitSet deleted = deletesOf(deletes, r);
+                readers.get(r).forEachNorm((docId, length) -> {
+                    if (deleted == null || !deleted.get(docId)) {
+                        writer.addNorm(docId, length);
+                    }
+                });
+            }
+            writer.commit();
+        }
+    }
+
+    private static BitSet deletesOf(List<BitSet> deletes, int reader) {
+        if (deletes == null || deletes.get(reader) == null || deletes.get(reader).isEmpty()) {
+            return null;
+        }
+        return deletes.get(reader);
+    }
+
+    /**
+     * 未提交时删除临时目录
+     */
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+        postings.close();
+        if (impacts != null) {
+            impacts.close();
+        }
+        try (var files = Files.list(tmp)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(tmp);
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.searchenginedemo.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 前缀补全用的只读词典。
+ * <p>
+ * 词按 UTF-8 字节序排序，因此任意前缀(中文或拉丁字母)匹配的词都是一段连续的序号区间。
+ * 词以前缀共享编码(front coding)存放在一个 byte[] 中，每 BLOCK_SIZE 个词一块，块首存完整的词，
+ * 其余只存与前一个词不同的后缀；查找时先对块首二分，再在块内顺序解码。
+ * 每个词的权重存放在 float[] 中，另有一棵按序号排列的最大值线段树，
+ * 取区间内权重最高的 k 个词只需 O(k log n)，与前缀匹配的词数无关。
+ */
+public final class SuggestDictionary {
+    // 每块包含的词数
+    private static final int BLOCK_SIZE = 16;
+
+    private final int size;
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final float[] weights;
+    // 线段树，叶子从 leafBase 开始，每个节点存子树中权重最高的词的序号，空叶子为 -1
+    private final int[] tree;
+    private final int leafBase;
+    private final int maxTermBytes;
+
+    private SuggestDictionary(int size, byte[] data, int[] blockOffsets, float[] weights, int maxTermBytes) {
+        this.size = size;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.weights = weights;
+        this.maxTermBytes = maxTermBytes;
+
+        int base = 1;
+        while (base < size) {
+            base <<= 1;
+        }
+        this.leafBase = base;
+        this.tree = new int[base << 1];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < size; i++) {
+            tree[base + i] = i;
+        }
+        for (int node = base - 1; node >= 1; node--) {
+            tree[node] = better(tree[node << 1], tree[(node << 1) | 1]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 估算占用的堆内存字节数
+     */
+    public long ramBytes() {
+        return data.length + 4L * blockOffsets.length + 4L * weights.length + 4L * tree.length;
+    }
+
+    /**
+     * 以 prefix 开头、权重最高的至多 limit 个词，按权重降序；同权重时按字节序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (size == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = search(key, false);
+        int to = search(key, true);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        // 每个候选为 [区间起点, 区间终点, 区间内最佳序号]，取出一个后把左右两段放回
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1);
+        queue.add(new int[]{from, to, argMax(from, to)});
+        byte[] scratch = new byte[maxTermBytes];
+        List<String> result = new ArrayList<>(Math.min(limit, to - from));
+        while (!queue.isEmpty() && result.size() < limit) {
+            int[] range = queue.poll();
+            int ord = range[2];
+            result.add(term(ord, scratch));
+            if (range[0] < ord) {
+                queue.add(new int[]{range[0], ord, argMax(range[0], ord)});
+            }
+            if (ord + 1 < range[1]) {
+                queue.add(new int[]{ord + 1, range[1], argMax(ord + 1, range[1])});
+            }
+        }
+        return result;
+    }
+
+    public String term(int ord) {
+        return term(ord, new byte[maxTermBytes]);
+    }
+
+    public float weight(int ord) {
+        return weights[ord];
+    }
+
+    private String term(int ord, byte[] scratch) {
+        int block = ord / BLOCK_SIZE;
+        int[] ptr = {blockOffsets[block]};
+        int length = readVInt(ptr);
+        System.arraycopy(data, ptr[0], scratch, 0, length);
+        ptr[0] += length;
+        for (int i = block * BLOCK_SIZE + 1; i <= ord; i++) {
+            int shared = readVInt(ptr);
+            int suffix = readVInt(ptr);
+            System.arraycopy(data, ptr[0], scratch, shared, suffix);
+            ptr[0] += suffix;
+            length = shared + suffix;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 返回第一个满足条件的词的序号：strict 为 false 时为第一个 &gt;= key 的词，
+     * 为 true 时为第一个既不小于 key 也不以 key 开头的词。两者之间即以 key 开头的词
+     */
+    private int search(byte[] key, boolean strict) {
+        // 找到最后一个块首仍在目标之前的块
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int[] ptr = {blockOffsets[mid]};
+            int length = readVInt(ptr);
+            if (before(data, ptr[0], length, key, strict)) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+
+        byte[] scratch = new byte[maxTermBytes];
+        int[] ptr = {blockOffsets[block]};
+        int length = readVInt(ptr);
+        System.arraycopy(data, ptr[0], scratch, 0, length);
+        ptr[0] += length;
+        int ord = block * BLOCK_SIZE;
+        int end = Math.min(size, ord + BLOCK_SIZE);
+        while (++ord < end) {
+            int shared = readVInt(ptr);
+            int suffix = readVInt(ptr);
+            System.arraycopy(data, ptr[0], scratch, shared, suffix);
+            ptr[0] += suffix;
+            length = shared + suffix;
+            if (!before(scratch, 0, length, key, strict)) {
+                return ord;
+            }
+        }
+        return end;
+    }
+
+    // 词是否排在目标之前：只比较前 key.length 个字节，以 key 开头的词在 strict 时也算在之前
+    private static boolean before(byte[] bytes, int offset, int length, byte[] key, boolean strict) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(bytes[offset + i] & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp < 0;
+            }
+        }
+        return length < key.length || strict;
+    }
+
+    private int argMax(int from, int to) {
+        int best = -1;
+        for (int l = from + leafBase, r = to + leafBase; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = better(best, tree[l++]);
+            }
+            if ((r & 1) == 1) {
+                best = better(best, tree[--r]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        if (weights[a] != weights[b]) {
+            return weights[a] > weights[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    private int readVInt(int[] ptr) {
+        byte b = data[ptr[0]++];
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = data[ptr[0]++];
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * 收集词与权重，顺序任意；同一个词多次加入时取最大权重
+     */
+    public static class Builder {
+        private final Map<String, Float> weights = new HashMap<>();
+
+        public void add(String term, float weight) {
+            if (term == null || term.isEmpty()) {
+                return;
+            }
+            weights.merge(term, weight, Math::max);
+        }
+
+        public int size() {
+            return weights.size();
+        }
+
+        public SuggestDictionary build() {
+            int n = weights.size();
+            byte[][] terms = new byte[n][];
+            float[] termWeights = new float[n];
+            Integer[] order = new Integer[n];
+            List<String> names = new ArrayList<>(weights.keySet());
+            for (int i = 0; i < n; i++) {
+                terms[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+
+            PostingsCodec.ByteSink out = new PostingsCodec.ByteSink(n * 4);
+            int[] blockOffsets = new int[(n + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            int maxTermBytes = 0;
+            byte[] prev = null;
+            for (int ord = 0; ord < n; ord++) {
+                byte[] term = terms[order[ord]];
+                termWeights[ord] = weights.get(names.get(order[ord]));
+                maxTermBytes = Math.max(maxTermBytes, term.length);
+                if (ord % BLOCK_SIZE == 0) {
+                    blockOffsets[ord / BLOCK_SIZE] = out.length();
+                    out.writeVInt(term.length);
+                    writeBytes(out, term, 0, term.length);
+                } else {
+                    int shared = Arrays.mismatch(prev, term);
+                    if (shared < 0) {
+                        shared = prev.length;
+                    }
+                    out.writeVInt(shared);
+                    out.writeVInt(term.length - shared);
+                    writeBytes(out, term, shared, term.length);
+                }
+                prev = term;
+            }
+            return new SuggestDictionary(n, out.toByteArray(), blockOffsets, termWeights, maxTermBytes);
+        }
+
+        private static void writeBytes(PostingsCodec.ByteSink out, byte[] bytes, int from, int to) {
+            for (int i = from; i < to; i++) {
+                out.writeByte(bytes[i]);
+            }
+        }
+    }
+}
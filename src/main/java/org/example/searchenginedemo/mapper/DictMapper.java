@@ -3,6 +3,7 @@ package org.example.searchenginedemo.mapper;
 import org.apache.ibatis.annotations.Mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,7 +12,29 @@ import java.util.Map;
 
 @Mapper
 public interface DictMapper {
-    // 批量更新方法
+    // 批量写入倒排尾部，不存在的词会被创建
     @Transactional
-    void batchUpdateDict(List<Map<String, String>> paramsList);
+    void upsertPostings(List<Map<String, String>> paramsList);
+
+    // 按词名分页查询仍有文本尾部待折叠的词条
+    List<Map<String, Object>> selectPendingPostings(@Param("afterName") String afterName, @Param("limit") int limit);
+
+    // 按词名分页读取全部词条
+    List<Map<String, Object>> selectPostingsPage(@Param("afterName") String afterName, @Param("limit") int limit);
+
+    // 按词名分页读取词名与倒排表头部(含文档数)，不读取完整的倒排表
+    List<Map<String, Object>> selectTermHeads(@Param("afterName") String afterName, @Param("limit") int limit);
+
+    // 将文本尾部折叠进二进制倒排表，二进制部分须仍为读取时的 expected，返回受影响行数
+    int foldPostings(@Param("name") String name, @Param("expected") byte[] expected,
+                     @Param("postings") byte[] postings, @Param("tail") String tail);
+
+    // 全量重建：创建与 word_dict 结构相同的空表
+    void createBuildTable();
+
+    // 全量重建：批量写入完整的二进制倒排表
+    void insertBuildPostings(List<Map<String, Object>> rows);
+
+    // 全量重建：用新表原子替换 word_dict
+    void swapBuildTable();
 }
@@ -1,12 +1,37 @@
 package org.example.searchenginedemo.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.example.searchenginedemo.entity.Context;
+import org.example.searchenginedemo.entity.PageNorm;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
 public interface PagesMapper {
-    List<Context> selectTextFromPages(String table);
-    void updateDicDone(String table);
+    // 按id键集分页读取待分词的页面
+    List<Context> selectPendingPages(@Param("table") String table, @Param("afterId") int afterId, @Param("limit") int limit);
+
+    // 发布成功后标记一批页面已分词
+    int markDicDone(@Param("table") String table, @Param("ids") Collection<Integer> ids);
+
+    long countPendingPages(@Param("table") String table);
+
+    // 全量重建：读取 maxId 及之前的已爬取页面
+    List<Context> selectCrawledPages(@Param("table") String table, @Param("afterId") int afterId,
+                                     @Param("maxId") int maxId, @Param("limit") int limit);
+
+    Integer selectMaxCrawledId(@Param("table") String table);
+
+    // 按id分页读取文档长度
+    List<PageNorm> selectPageNorms(@Param("table") String table, @Param("afterId") int afterId, @Param("limit") int limit);
+
+    // 按id批量读取文档长度
+    List<PageNorm> selectPageNormsByIds(@Param("table") String table, @Param("ids") Collection<Integer> ids);
+
+    int deletePage(@Param("table") String table, @Param("id") int id);
+
+    // 重新索引：把页面放回待分词状态
+    int markDicUndone(@Param("table") String table, @Param("ids") Collection<Integer> ids);
 }
@@ -2,17 +2,22 @@ package org.example.searchenginedemo.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.example.searchenginedemo.entity.PageStats;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 @Mapper
 public interface SearchMapper {
-    public int getTotalPageCount();
+    public PageStats getPageStats(@Param("table") String table);
 
-    public List<Integer> getAllPageIds();
+    public List<Integer> getAllPageIds(@Param("table") String table);
 
-    public String getPageContent(@Param("docId") int docId);
+    public String getPageContent(@Param("table") String table, @Param("docId") int docId);
+
+    public List<Map<String, Object>> getPageContents(@Param("table") String table,
+                                                     @Param("docIds") Collection<Integer> docIds);
 
     public int getPageFrequency(@Param("term") String term);
 
@@ -20,7 +25,5 @@ public interface SearchMapper {
 
     public List<Map<String, Object>> searchTerms(@Param("terms") List<String> terms);
 
-    public int getPageLength(@Param("docId") int docId);
-
-    public double getAveragePageLength();
+    public Integer getPageLength(@Param("table") String table, @Param("docId") int docId);
 }
@@ -0,0 +1,21 @@
+package org.example.searchenginedemo.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.searchenginedemo.entity.Tombstone;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface TombstoneMapper {
+    // 写入墓碑，已存在时重置为未移除
+    int upsertTombstone(@Param("docId") int docId, @Param("reindex") boolean reindex);
+
+    List<Tombstone> selectTombstones();
+
+    // 倒排表压缩完成后标记已移除
+    int markPurged(@Param("ids") Collection<Integer> ids);
+
+    int deleteTombstones(@Param("ids") Collection<Integer> ids);
+}
@@ -0,0 +1,66 @@
+package org.example.searchenginedemo.message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个页面(或页面的一部分词)的分词结果，作为一条 Kafka 消息发送
+ */
+public class PageTerms {
+    // 旧格式的消息不携带分片序号
+    public static final int UNKNOWN_PART = -1;
+
+    private final int pageId;
+    // 页面分词后的总词数
+    private final int tokenCount;
+    // 页面拆分成多条消息时的序号，从 0 开始；序号为 0 的消息表示页面的一次新的索引
+    private final int part;
+    // 词 -> 升序位置
+    private final Map<String, int[]> termPositions;
+
+    public PageTerms(int pageId, int tokenCount) {
+        this(pageId, tokenCount, 0);
+    }
+
+    public PageTerms(int pageId, int tokenCount, int part) {
+        this(pageId, tokenCount, part, new LinkedHashMap<>());
+    }
+
+    public PageTerms(int pageId, int tokenCount, Map<String, int[]> termPositions) {
+        this(pageId, tokenCount, 0, termPositions);
+    }
+
+    public PageTerms(int pageId, int tokenCount, int part, Map<String, int[]> termPositions) {
+        this.pageId = pageId;
+        this.tokenCount = tokenCount;
+        this.part = part;
+        this.termPositions = termPositions;
+    }
+
+    public int getPageId() {
+        return pageId;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getPart() {
+        return part;
+    }
+
+    public Map<String, int[]> getTermPositions() {
+        return termPositions;
+    }
+
+    /**
+     * 全部词的位置总数
+     */
+    public int positionCount() {
+        int count = 0;
+        for (int[] positions : termPositions.values()) {
+            count += positions.length;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.searchenginedemo.message;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 解析 {@link PageTermsSerializer} 的二进制格式；
+ * 同时兼容旧版的 "word|pageId|pos" 文本消息，将其转换为只含一个词的 PageTerms。
+ * 无法解析的消息返回 null，由消费者跳过。
+ */
+public class PageTermsDeserializer implements Deserializer<PageTerms> {
+    private static final Logger logger = LoggerFactory.getLogger(PageTermsDeserializer.class);
+
+    @Override
+    public PageTerms deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try {
+            if (data[0] == PageTermsSerializer.MAGIC) {
+                return deserializeBinary(ByteBuffer.wrap(data));
+            }
+            return deserializeLegacy(new String(data, StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            logger.error("无法解析分词消息，已跳过 ({} 字节)", data.length, e);
+            return null;
+        }
+    }
+
+    private PageTerms deserializeBinary(ByteBuffer buffer) {
+        buffer.get();
+        byte version = buffer.get();
+        if (version != 1 && version != PageTermsSerializer.VERSION) {
+            throw new IllegalArgumentException("不支持的分词消息版本: " + version);
+        }
+
+        int pageId = readVInt(buffer);
+        int tokenCount = readVInt(buffer);
+        int part = version == 1 ? PageTerms.UNKNOWN_PART : readVInt(buffer);
+        int termCount = readVInt(buffer);
+
+        Map<String, int[]> termPositions = new LinkedHashMap<>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+            int termLength = readVInt(buffer);
+            String term = new String(buffer.array(), buffer.position(), termLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + termLength);
+
+            int[] positions = new int[readVInt(buffer)];
+            int prev = 0;
+            for (int j = 0; j < positions.length; j++) {
+                prev += readVInt(buffer);
+                positions[j] = prev;
+            }
+            termPositions.put(term, positions);
+        }
+        return new PageTerms(pageId, tokenCount, part, termPositions);
+    }
+
+    private PageTerms deserializeLegacy(String message) {
+        String[] parts = message.split("\\|");
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("无效的旧版分词消息: " + message);
+        }
+        Map<String, int[]> termPositions = new LinkedHashMap<>();
+        termPositions.put(parts[0], new int[]{Integer.parseInt(parts[2])});
+        // 旧版消息不携带文档长度
+        return new PageTerms(Integer.parseInt(parts[1]), 0, PageTerms.UNKNOWN_PART, termPositions);
+    }
+
+    private static int readVInt(ByteBuffer buffer) {
+        byte b = buffer.get();
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+}
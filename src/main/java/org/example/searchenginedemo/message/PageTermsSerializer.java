@@ -0,0 +1,59 @@
+package org.example.searchenginedemo.message;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * PageTerms 的二进制格式：
+ * <pre>
+ * [magic:byte][version:byte][pageId:vint][tokenCount:vint][part:vint][termCount:vint]
+ * 每个词: [utf8Length:vint][utf8Bytes][freq:vint][posDelta:vint * freq]
+ * </pre>
+ * 版本1没有 part 字段。
+ */
+public class PageTermsSerializer implements Serializer<PageTerms> {
+    // 0xFE 不会出现在 UTF-8 文本的首字节，可以与旧版文本消息区分
+    static final byte MAGIC = (byte) 0xFE;
+    static final byte VERSION = 2;
+
+    @Override
+    public byte[] serialize(String topic, PageTerms data) {
+        if (data == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + data.positionCount() * 2);
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVInt(out, data.getPageId());
+        writeVInt(out, data.getTokenCount());
+        writeVInt(out, Math.max(0, data.getPart()));
+        writeVInt(out, data.getTermPositions().size());
+
+        for (Map.Entry<String, int[]> entry : data.getTermPositions().entrySet()) {
+            byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            writeVInt(out, term.length);
+            out.write(term, 0, term.length);
+
+            int[] positions = entry.getValue();
+            writeVInt(out, positions.length);
+            int prev = 0;
+            for (int position : positions) {
+                writeVInt(out, position - prev);
+                prev = position;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
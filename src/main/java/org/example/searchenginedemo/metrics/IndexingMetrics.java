@@ -0,0 +1,108 @@
+package org.example.searchenginedemo.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 索引写入与摄取流水线的指标。
+ * Kafka 消费延迟(records-lag)由 Spring Boot 自动注册的 Kafka 客户端指标提供，不在这里重复统计。
+ */
+@Component
+public class IndexingMetrics {
+    private final MeterRegistry registry;
+
+    private final Counter messages;
+    private final Counter positionsReceived;
+    private final Timer flushLatency;
+    private final DistributionSummary flushTerms;
+    private final DistributionSummary flushPositions;
+    private final Counter flushFailures;
+
+    private final Timer segmentLatency;
+    private final Counter segmentedPages;
+    private final Counter segmentedTokens;
+    private final Counter publishedPages;
+    private final Counter failedPages;
+
+    public IndexingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        messages = Counter.builder("index.messages")
+                .description("消费的分词消息数")
+                .register(registry);
+        positionsReceived = Counter.builder("index.positions.received")
+                .description("消费的词位置数")
+                .register(registry);
+        flushLatency = Timer.builder("index.flush.latency")
+                .description("processBatch 写入数据库的耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        flushTerms = DistributionSummary.builder("index.flush.terms")
+                .description("每次刷新写入的词数")
+                .register(registry);
+        flushPositions = DistributionSummary.builder("index.flush.positions")
+                .description("每次刷新写入的位置数")
+                .register(registry);
+        flushFailures = Counter.builder("index.flush.failures")
+                .description("写入数据库失败的刷新次数")
+                .register(registry);
+
+        segmentLatency = Timer.builder("ingest.segment.latency")
+                .description("摄取流水线中一批页面的分词耗时")
+                .register(registry);
+        segmentedPages = Counter.builder("ingest.segmented.pages")
+                .description("已分词的页面数")
+                .register(registry);
+        segmentedTokens = Counter.builder("ingest.segmented.tokens")
+                .description("分词产生的词数，按速率查看即为每秒分词数")
+                .register(registry);
+        publishedPages = Counter.builder("ingest.published.pages")
+                .description("发布到Kafka并标记完成的页面数")
+                .register(registry);
+        failedPages = Counter.builder("ingest.failed.pages")
+                .description("分词或发布失败的页面数")
+                .register(registry);
+    }
+
+    /**
+     * 注册队列深度等瞬时值，obj 由调用方持有
+     */
+    public <T> void gauge(String name, String description, T obj, ToDoubleFunction<T> value) {
+        Gauge.builder(name, obj, value).description(description).register(registry);
+    }
+
+    public void recordMessage(long positions) {
+        messages.increment();
+        positionsReceived.increment(positions);
+    }
+
+    public void recordFlush(long millis, int terms, long positions) {
+        flushLatency.record(millis, TimeUnit.MILLISECONDS);
+        flushTerms.record(terms);
+        flushPositions.record(positions);
+    }
+
+    public void recordFlushFailure() {
+        flushFailures.increment();
+    }
+
+    public void recordSegmented(long nanos, int pages, long tokens) {
+        segmentLatency.record(nanos, TimeUnit.NANOSECONDS);
+        segmentedPages.increment(pages);
+        segmentedTokens.increment(tokens);
+    }
+
+    public void recordPublished(int pages) {
+        publishedPages.increment(pages);
+    }
+
+    public void recordFailed(int pages) {
+        failedPages.increment(pages);
+    }
+}
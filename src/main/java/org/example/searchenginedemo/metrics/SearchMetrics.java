@@ -0,0 +1,83 @@
+package org.example.searchenginedemo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 搜索各阶段的耗时与每次查询读取的倒排表规模。
+ * 所有指标在启动时创建，热路径上只有 System.nanoTime 与一次 record 调用。
+ */
+@Component
+public class SearchMetrics {
+
+    public enum Stage {
+        // 查询分析
+        PARSE,
+        // 读取倒排表(缓存、数据库或本地索引段)
+        POSTINGS,
+        // 构建评分器，计算IDF与得分上界
+        SCORERS,
+        // MaxScore 求值与前K名收集
+        EVALUATE,
+        // 读取页面内容并装配结果
+        HYDRATE
+    }
+
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Timer searchTimer;
+    private final DistributionSummary queryTerms;
+    private final DistributionSummary postingsBytes;
+    private final DistributionSummary postingsDocs;
+    private final DistributionSummary results;
+
+    public SearchMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("search.stage.latency")
+                    .description("搜索各阶段耗时(不含命中查询缓存的请求)")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        searchTimer = Timer.builder("search.latency")
+                .description("搜索请求总耗时，包含查询缓存命中")
+                .publishPercentileHistogram()
+                .register(registry);
+        queryTerms = DistributionSummary.builder("search.query.terms")
+                .description("每次查询分析后的词数")
+                .register(registry);
+        postingsBytes = DistributionSummary.builder("search.postings.bytes")
+                .description("每次查询读取的倒排表字节数")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        postingsDocs = DistributionSummary.builder("search.postings.docs")
+                .description("每次查询各词倒排表的文档数之和")
+                .publishPercentileHistogram()
+                .register(registry);
+        results = DistributionSummary.builder("search.results")
+                .description("每次查询返回的结果数")
+                .register(registry);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSearch(long nanos) {
+        searchTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPostings(int terms, long bytes, long docs) {
+        queryTerms.record(terms);
+        postingsBytes.record(bytes);
+        postingsDocs.record(docs);
+    }
+
+    public void recordResults(int count) {
+        results.record(count);
+    }
+}
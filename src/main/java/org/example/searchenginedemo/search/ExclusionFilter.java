@@ -0,0 +1,129 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.PostingsCursor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * 把排除子句展开为 docId 位图，求值时每个候选文档只需一次 BitSet.get。
+ * 多词子句按文档数升序求交集，最稀有的词主导，其余词通过跳表 advance 跟进。
+ * 排除短语在交集文档上再按位置匹配，与 {@link ProximityScorer} 的短语匹配相同。
+ */
+public class ExclusionFilter {
+
+    public static BitSet build(List<List<String>> clauses, Map<String, ByteBuffer> postingsByTerm) {
+        return build(clauses, List.of(), postingsByTerm);
+    }
+
+    /**
+     * @param postingsByTerm 各词的倒排表，子句或短语中有词不在其中时不可能匹配，直接忽略
+     * @return 需要排除的文档，没有时返回 null
+     */
+    public static BitSet build(List<List<String>> clauses, List<ParsedQuery.Phrase> phrases,
+                               Map<String, ByteBuffer> postingsByTerm) {
+        BitSet excluded = null;
+        for (List<String> clause : clauses) {
+            PostingsCursor[] cursors = cursors(clause, postingsByTerm);
+            if (cursors == null) {
+                continue;
+            }
+            if (excluded == null) {
+                excluded = new BitSet();
+            }
+            intersect(cursors, doc -> true, excluded);
+        }
+        for (ParsedQuery.Phrase phrase : phrases) {
+            PostingsCursor[] cursors = cursors(phrase.getTerms(), postingsByTerm);
+            if (cursors == null) {
+                continue;
+            }
+            if (excluded == null) {
+                excluded = new BitSet();
+            }
+            intersect(cursors, new PhraseMatcher(cursors, phrase.getOffsets()), excluded);
+        }
+        return excluded;
+    }
+
+    /**
+     * 按词的顺序为每个词创建独立的游标，有词没有倒排表时返回 null
+     */
+    private static PostingsCursor[] cursors(List<String> terms, Map<String, ByteBuffer> postingsByTerm) {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        PostingsCursor[] cursors = new PostingsCursor[terms.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            ByteBuffer postings = postingsByTerm.get(terms.get(i));
+            if (postings == null) {
+                return null;
+            }
+            cursors[i] = new PostingsCursor().reset(postings, 0);
+        }
+        return cursors;
+    }
+
+    /**
+     * 所有游标都定位到同一文档且 matches 接受时将其加入位图
+     */
+    private static void intersect(PostingsCursor[] cursors, IntPredicate matches, BitSet excluded) {
+        PostingsCursor[] sorted = cursors.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(PostingsCursor::docCount));
+        PostingsCursor lead = sorted[0];
+        int doc = lead.nextDoc();
+        outer:
+        while (doc != PostingsCursor.NO_MORE_DOCS) {
+            for (int i = 1; i < sorted.length; i++) {
+                int other = sorted[i].advance(doc);
+                if (other > doc) {
+                    doc = lead.advance(other);
+                    continue outer;
+                }
+            }
+            if (matches.test(doc)) {
+                excluded.set(doc);
+            }
+            doc = lead.nextDoc();
+        }
+    }
+
+    /**
+     * 读取各词在当前文档中的位置并匹配短语，游标顺序与短语中的词相同
+     */
+    private static final class PhraseMatcher implements IntPredicate {
+        private final PostingsCursor[] cursors;
+        private final int[] offsets;
+        private final int[][] positions;
+        private final int[] freqs;
+        private final int[] pointers;
+
+        PhraseMatcher(PostingsCursor[] cursors, int[] offsets) {
+            this.cursors = cursors;
+            this.offsets = offsets;
+            this.positions = new int[cursors.length][8];
+            this.freqs = new int[cursors.length];
+            this.pointers = new int[cursors.length];
+        }
+
+        @Override
+        public boolean test(int doc) {
+            for (int k = 0; k < cursors.length; k++) {
+                int freq = cursors[k].freq();
+                if (positions[k].length < freq) {
+                    positions[k] = new int[Math.max(freq, positions[k].length << 1)];
+                }
+                for (int i = 0; i < freq; i++) {
+                    positions[k][i] = cursors[k].nextPosition();
+                }
+                freqs[k] = freq;
+            }
+            return ProximityScorer.matchPositions(positions, freqs, offsets, cursors.length, pointers);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.ImpactCursor;
+import org.example.searchenginedemo.index.ImpactModel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/**
+ * 按影响值逐级(SAAT)求值。
+ * 每个查询词的权重(IDF 乘以段的量化刻度)先按查询内最大值量化为 1~255 的整数，
+ * 文档得分即各级"权重 × 影响值"的整数累加。所有倒排表按贡献从高到低交替读取，
+ * 剩余各级的贡献之和(任何文档还能增加的最大得分)小于第 K 名与第 K+1 名的差距时，
+ * 前 K 名的集合已经确定，提前停止；此时前 K 名的得分是下界，名次可能与完整求值略有差异。
+ * <p>
+ * 同一个词在多个段中时，一个文档可能同时出现在该词的多个倒排表中。
+ * 各级按贡献从高到低处理，因此每个 (词, 文档) 只累加最先读到的、即最大的一次贡献，不会重复计分。
+ */
+public class ImpactEvaluator {
+
+    /**
+     * @param cursors 各词在各段中的影响值倒排表，同一个词在多个段中时各占一项
+     * @param idfs    与 cursors 对应的 IDF
+     */
+    public static void evaluate(ImpactCursor[] cursors, double[] idfs, TopKCollector collector) {
+        evaluate(cursors, idfs, null, collector);
+    }
+
+    /**
+     * @param excluded 不能出现在结果中的文档，可以为 null；这些文档不进入累加，不影响提前停止的判断
+     */
+    public static void evaluate(ImpactCursor[] cursors, double[] idfs, BitSet excluded, TopKCollector collector) {
+        evaluate(cursors, idfs, null, excluded, collector);
+    }
+
+    /**
+     * @param terms 与 cursors 对应的词编号，编号相同的倒排表属于同一个词；为 null 时每个倒排表是不同的词
+     */
+    public static void evaluate(ImpactCursor[] cursors, double[] idfs, int[] terms, BitSet excluded,
+                                TopKCollector collector) {
+        int n = cursors.length;
+        int k = collector.capacity();
+        if (n == 0 || k == 0) {
+            return;
+        }
+
+        double[] realWeights = new double[n];
+        double maxWeight = 0;
+        for (int i = 0; i < n; i++) {
+            realWeights[i] = idfs[i] * cursors[i].model().scale();
+            maxWeight = Math.max(maxWeight, realWeights[i]);
+        }
+        if (maxWeight <= 0) {
+            return;
+        }
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = Math.max(1, (int) Math.round(realWeights[i] / maxWeight * ImpactModel.LEVELS));
+        }
+        // 累加值的一个单位对应的 BM25 得分
+        double unit = maxWeight / ImpactModel.LEVELS;
+
+        // 同一个词有多个倒排表时，这些倒排表共用一个已累加文档的位图
+        BitSet[] seen = new BitSet[n];
+        if (terms != null) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (terms[i] == terms[j]) {
+                        if (seen[i] == null) {
+                            seen[i] = new BitSet();
+                        }
+                        seen[j] = seen[i];
+                    }
+                }
+            }
+        }
+
+        int[] contributions = new int[n];
+        PriorityQueue<Integer> order = new PriorityQueue<>(n, (a, b) -> Integer.compare(contributions[b], contributions[a]));
+        long remaining = 0;
+        for (int i = 0; i < n; i++) {
+            contributions[i] = weights[i] * cursors[i].nextLevel();
+            if (contributions[i] > 0) {
+                order.add(i);
+                remaining += contributions[i];
+            }
+        }
+
+        Accumulators acc = new Accumulators();
+        long processed = 0;
+        long nextCheck = k;
+        while (!order.isEmpty()) {
+            if (processed >= nextCheck) {
+                if (canStop(acc, k, remaining)) {
+                    break;
+                }
+                // 检查需要遍历所有候选文档，按已处理文档数倍增间隔，均摊到每个文档为常数
+                nextCheck = Math.max(processed * 2, acc.size());
+            }
+
+            int i = order.poll();
+            int contribution = contributions[i];
+            remaining -= contribution;
+            ImpactCursor cursor = cursors[i];
+            BitSet termSeen = seen[i];
+            int size = cursor.levelSize();
+            for (int j = 0; j < size; j++) {
+                int doc = cursor.nextDoc();
+                if (excluded != null && excluded.get(doc)) {
+                    continue;
+                }
+                if (termSeen != null) {
+                    if (termSeen.get(doc)) {
+                        continue;
+                    }
+                    termSeen.set(doc);
+                }
+                acc.add(doc, contribution);
+            }
+            processed += size;
+
+            contributions[i] = weights[i] * cursor.nextLevel();
+            if (contributions[i] > 0) {
+                order.add(i);
+                remaining += contributions[i];
+            }
+        }
+
+        for (int j = 0; j < acc.size(); j++) {
+            int doc = acc.doc(j);
+            collector.collect(doc, acc.score(doc) * unit);
+        }
+    }
+
+    /**
+     * 第 K 名的累加值严格大于第 K+1 名加上剩余贡献时，任何文档都无法再进入或挤出前 K 名
+     */
+    private static boolean canStop(Accumulators acc, int k, long remaining) {
+        if (acc.size() <= k) {
+            return false;
+        }
+        TopKCollector top = new TopKCollector(k + 1);
+        for (int j = 0; j < acc.size(); j++) {
+            int doc = acc.doc(j);
+            top.collect(doc, acc.score(doc));
+        }
+        ScoreDoc[] best = top.topDocs();
+        return best[k - 1].getScore() > best[k].getScore() + remaining;
+    }
+
+    /**
+     * 以 docId 为下标的稠密累加数组，并记录出现过的文档
+     */
+    private static final class Accumulators {
+        private int[] scores = new int[1024];
+        private int[] docs = new int[256];
+        private int size;
+
+        void add(int doc, int contribution) {
+            if (doc >= scores.length) {
+                scores = Arrays.copyOf(scores, Math.max(doc + 1, scores.length << 1));
+            }
+            if (scores[doc] == 0) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size << 1);
+                }
+                docs[size++] = doc;
+            }
+            scores[doc] += contribution;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int doc(int index) {
+            return docs[index];
+        }
+
+        int score(int doc) {
+            return scores[doc];
+        }
+    }
+}
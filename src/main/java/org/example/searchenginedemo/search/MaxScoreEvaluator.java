@@ -0,0 +1,200 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.PostingsCursor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * 逐文档(DAAT)求值的 MaxScore 算法。
+ * 按得分上界将查询词分为"必要"与"非必要"两组：只出现非必要词的文档不可能超过当前阈值，
+ * 因此只在必要词的倒排表上枚举候选文档，非必要词仅在候选文档仍有可能进入前K名时才 advance 过去。
+ * 存在必须出现的词(如短语、+词、AND)时，改由这些词的交集驱动候选文档：最稀有的词主导，其余词通过跳表 advance 跟进。
+ * 排除子句预先展开为位图，命中的候选文档不评分。
+ */
+public class MaxScoreEvaluator {
+
+    public static void evaluate(TermScorer[] scorers, TopKCollector collector) {
+        evaluate(new TermScorer[0], scorers, null, collector);
+    }
+
+    public static void evaluate(TermScorer[] required, TermScorer[] optional,
+                                ProximityScorer proximity, TopKCollector collector) {
+        evaluate(required, optional, proximity, null, collector);
+    }
+
+    /**
+     * @param required  必须全部出现的词
+     * @param optional  可选词，只贡献得分
+     * @param proximity 短语匹配与邻近度加分，可以为 null
+     * @param excluded  不能出现在结果中的文档，可以为 null
+     */
+    public static void evaluate(TermScorer[] required, TermScorer[] optional,
+                                ProximityScorer proximity, BitSet excluded, TopKCollector collector) {
+        double maxBoost = proximity == null ? 0.0 : proximity.maxBoost();
+        if (required.length == 0) {
+            disjunction(optional, proximity, maxBoost, excluded, collector);
+        } else {
+            conjunction(required, optional, proximity, maxBoost, excluded, collector);
+        }
+    }
+
+    private static void disjunction(TermScorer[] scorers, ProximityScorer proximity,
+                                    double maxBoost, BitSet excluded, TopKCollector collector) {
+        int n = scorers.length;
+        if (n == 0) {
+            return;
+        }
+
+        // 按得分上界升序排列，prefixMax[i] 为前 i 个词上界之和
+        TermScorer[] sorted = scorers.clone();
+        Arrays.sort(sorted, Comparator.comparingDouble(TermScorer::maxScore));
+        double[] prefixMax = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefixMax[i + 1] = prefixMax[i] + sorted[i].maxScore();
+            sorted[i].nextDoc();
+        }
+
+        double threshold = collector.threshold();
+        int firstEssential = 0;
+
+        while (true) {
+            // 阈值提高后，更多的低上界词变为非必要
+            while (firstEssential < n && prefixMax[firstEssential + 1] + maxBoost <= threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == n) {
+                break;
+            }
+
+            // 候选文档为必要词中最小的 docId
+            int doc = PostingsCursor.NO_MORE_DOCS;
+            for (int i = firstEssential; i < n; i++) {
+                doc = Math.min(doc, sorted[i].docId());
+            }
+            if (doc == PostingsCursor.NO_MORE_DOCS) {
+                break;
+            }
+            if (excluded != null && excluded.get(doc)) {
+                for (int i = firstEssential; i < n; i++) {
+                    if (sorted[i].docId() == doc) {
+                        sorted[i].nextDoc();
+                    }
+                }
+                continue;
+            }
+
+            double score = 0.0;
+            for (int i = firstEssential; i < n; i++) {
+                if (sorted[i].docId() == doc) {
+                    score += sorted[i].score();
+                }
+            }
+
+            // 从上界最高的非必要词开始补分，剩余上界不足以超过阈值时提前放弃
+            boolean candidate = true;
+            for (int i = firstEssential - 1; i >= 0 && candidate; i--) {
+                if (score + prefixMax[i + 1] + maxBoost <= threshold) {
+                    candidate = false;
+                } else {
+                    score += scoreAt(sorted[i], doc);
+                }
+            }
+
+            if (candidate && proximity != null) {
+                double boost = proximity.score(doc);
+                candidate = boost >= 0;
+                score += boost;
+            }
+            if (candidate && score > threshold && collector.collect(doc, score)) {
+                threshold = collector.threshold();
+            }
+
+            // 候选文档处理完后再移动必要词，保证计算邻近度时位置仍可读取
+            for (int i = firstEssential; i < n; i++) {
+                if (sorted[i].docId() == doc) {
+                    sorted[i].nextDoc();
+                }
+            }
+        }
+    }
+
+    private static void conjunction(TermScorer[] required, TermScorer[] optional, ProximityScorer proximity,
+                                    double maxBoost, BitSet excluded, TopKCollector collector) {
+        // 必须词按文档数升序，以最稀有的词为主导；可选词按上界降序
+        TermScorer[] leads = required.clone();
+        Arrays.sort(leads, Comparator.comparingInt(TermScorer::cost));
+        TermScorer[] others = optional.clone();
+        Arrays.sort(others, Comparator.comparingDouble(TermScorer::maxScore).reversed());
+
+        double requiredMax = 0.0;
+        for (TermScorer scorer : leads) {
+            requiredMax += scorer.maxScore();
+        }
+        // suffixMax[i] 为第 i 个及之后可选词上界之和
+        double[] suffixMax = new double[others.length + 1];
+        for (int i = others.length - 1; i >= 0; i--) {
+            suffixMax[i] = suffixMax[i + 1] + others[i].maxScore();
+        }
+
+        double threshold = collector.threshold();
+        TermScorer lead = leads[0];
+        int doc = lead.nextDoc();
+
+        outer:
+        while (doc != PostingsCursor.NO_MORE_DOCS) {
+            if (requiredMax + suffixMax[0] + maxBoost <= threshold) {
+                break;
+            }
+
+            // 其余必须词跳到主导词的文档，任一词越过时主导词跟进
+            for (int i = 1; i < leads.length; i++) {
+                TermScorer scorer = leads[i];
+                if (scorer.docId() < doc) {
+                    scorer.advance(doc);
+                }
+                if (scorer.docId() > doc) {
+                    doc = lead.advance(scorer.docId());
+                    continue outer;
+                }
+            }
+            if (excluded != null && excluded.get(doc)) {
+                doc = lead.nextDoc();
+                continue;
+            }
+
+            double score = 0.0;
+            for (TermScorer scorer : leads) {
+                score += scorer.score();
+            }
+
+            boolean candidate = true;
+            for (int i = 0; i < others.length && candidate; i++) {
+                if (score + suffixMax[i] + maxBoost <= threshold) {
+                    candidate = false;
+                } else {
+                    score += scoreAt(others[i], doc);
+                }
+            }
+
+            if (candidate && proximity != null) {
+                double boost = proximity.score(doc);
+                candidate = boost >= 0;
+                score += boost;
+            }
+            if (candidate && score > threshold && collector.collect(doc, score)) {
+                threshold = collector.threshold();
+            }
+
+            doc = lead.nextDoc();
+        }
+    }
+
+    private static double scoreAt(TermScorer scorer, int doc) {
+        if (scorer.docId() < doc) {
+            scorer.advance(doc);
+        }
+        return scorer.docId() == doc ? scorer.score() : 0.0;
+    }
+}
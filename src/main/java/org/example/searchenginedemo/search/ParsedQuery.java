@@ -0,0 +1,112 @@
+package org.example.searchenginedemo.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 解析后的查询：全部查询词、必须出现的词、需要按位置匹配的短语，以及不能出现的排除子句与排除短语
+ */
+public class ParsedQuery {
+    private final Set<String> terms = new LinkedHashSet<>();
+    private final Set<String> requiredTerms = new LinkedHashSet<>();
+    private final List<Phrase> phrases = new ArrayList<>();
+    private final List<List<String>> excludedClauses = new ArrayList<>();
+    private final List<Phrase> excludedPhrases = new ArrayList<>();
+
+    public void addTerm(String term) {
+        terms.add(term);
+    }
+
+    public void addRequiredTerm(String term) {
+        terms.add(term);
+        requiredTerms.add(term);
+    }
+
+    public void addPhrase(Phrase phrase) {
+        for (String term : phrase.getTerms()) {
+            addRequiredTerm(term);
+        }
+        phrases.add(phrase);
+    }
+
+    /**
+     * 排除同时包含 terms 中所有词的文档，这些词不参与评分
+     */
+    public void addExcluded(List<String> terms) {
+        excludedClauses.add(terms);
+    }
+
+    /**
+     * 排除按位置匹配短语的文档，只包含短语中的词而不相邻的文档不受影响
+     */
+    public void addExcludedPhrase(Phrase phrase) {
+        excludedPhrases.add(phrase);
+    }
+
+    /**
+     * 去重后的全部查询词，保持出现顺序
+     */
+    public List<String> getTerms() {
+        return new ArrayList<>(terms);
+    }
+
+    public Set<String> getRequiredTerms() {
+        return requiredTerms;
+    }
+
+    public List<Phrase> getPhrases() {
+        return phrases;
+    }
+
+    public List<List<String>> getExcludedClauses() {
+        return excludedClauses;
+    }
+
+    public List<Phrase> getExcludedPhrases() {
+        return excludedPhrases;
+    }
+
+    public boolean hasExclusions() {
+        return !excludedClauses.isEmpty() || !excludedPhrases.isEmpty();
+    }
+
+    /**
+     * 排除子句与排除短语中出现的全部词，去重
+     */
+    public List<String> getExcludedTerms() {
+        Set<String> result = new LinkedHashSet<>();
+        excludedClauses.forEach(result::addAll);
+        excludedPhrases.forEach(phrase -> result.addAll(phrase.getTerms()));
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * 没有可评分的词时为空，只有排除子句的查询没有结果
+     */
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * 短语：词序列及每个词相对短语起点的位置偏移
+     */
+    public static class Phrase {
+        private final List<String> terms;
+        private final int[] offsets;
+
+        public Phrase(List<String> terms, int[] offsets) {
+            this.terms = terms;
+            this.offsets = offsets;
+        }
+
+        public List<String> getTerms() {
+            return terms;
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+    }
+}
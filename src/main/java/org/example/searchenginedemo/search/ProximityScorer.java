@@ -0,0 +1,199 @@
+package org.example.searchenginedemo.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于词位置的短语匹配与邻近度加分。
+ * 短语匹配以位置最少的词为主导，在其余词的有序位置表上倍增(galloping)查找，不展开笛卡尔积；
+ * 邻近度加分取命中词的最小覆盖窗口，窗口越小加分越高，全部相邻时加分最大。
+ */
+public class ProximityScorer {
+    // 每多一个相邻命中词的最大加分
+    private static final double PROXIMITY_WEIGHT = 1.0;
+
+    private final TermScorer[] scorers;
+    private final int[][] phraseTerms;
+    private final int[][] phraseOffsets;
+    private final double maxBoost;
+
+    // 复用的游标数组
+    private final int[] pointers;
+    private final TermScorer[] matched;
+    private final int[][] phrasePositions;
+    private final int[] phraseFreqs;
+
+    public ProximityScorer(TermScorer[] scorers, List<ParsedQuery.Phrase> phrases) {
+        this.scorers = scorers;
+        this.maxBoost = scorers.length >= 2 ? PROXIMITY_WEIGHT * (scorers.length - 1) : 0.0;
+
+        Map<String, Integer> termIndex = new HashMap<>();
+        for (int i = 0; i < scorers.length; i++) {
+            termIndex.put(scorers[i].getTerm(), i);
+        }
+
+        int maxPhraseLength = 0;
+        phraseTerms = new int[phrases.size()][];
+        phraseOffsets = new int[phrases.size()][];
+        for (int p = 0; p < phrases.size(); p++) {
+            List<String> terms = phrases.get(p).getTerms();
+            phraseTerms[p] = new int[terms.size()];
+            for (int k = 0; k < terms.size(); k++) {
+                Integer index = termIndex.get(terms.get(k));
+                if (index == null) {
+                    throw new IllegalArgumentException("短语中的词没有对应的评分器: " + terms.get(k));
+                }
+                phraseTerms[p][k] = index;
+            }
+            phraseOffsets[p] = phrases.get(p).getOffsets();
+            maxPhraseLength = Math.max(maxPhraseLength, terms.size());
+        }
+
+        this.pointers = new int[Math.max(maxPhraseLength, scorers.length)];
+        this.matched = new TermScorer[scorers.length];
+        this.phrasePositions = new int[maxPhraseLength][];
+        this.phraseFreqs = new int[maxPhraseLength];
+    }
+
+    /**
+     * 任意文档加分的上界
+     */
+    public double maxBoost() {
+        return maxBoost;
+    }
+
+    /**
+     * 返回文档的邻近度加分；有短语未匹配时返回 -1。
+     * 调用前所有评分器必须已经定位到 doc 或其之后。
+     */
+    public double score(int doc) {
+        for (int p = 0; p < phraseTerms.length; p++) {
+            if (!matchPhrase(phraseTerms[p], phraseOffsets[p], doc)) {
+                return -1;
+            }
+        }
+        return proximityBoost(doc);
+    }
+
+    private boolean matchPhrase(int[] terms, int[] offsets, int doc) {
+        for (int term : terms) {
+            if (scorers[term].docId() != doc) {
+                return false;
+            }
+        }
+        for (int k = 0; k < terms.length; k++) {
+            phrasePositions[k] = scorers[terms[k]].positions();
+            phraseFreqs[k] = scorers[terms[k]].freq();
+        }
+        return matchPositions(phrasePositions, phraseFreqs, offsets, terms.length, pointers);
+    }
+
+    /**
+     * 判断是否存在短语起点 start，使第 k 个词出现在 start + offsets[k]
+     *
+     * @param positions 短语中各词在文档中的升序位置，前 freqs[k] 个有效
+     * @param length    短语的词数
+     * @param pointers  长度不小于 length 的临时数组
+     */
+    static boolean matchPositions(int[][] positions, int[] freqs, int[] offsets, int length, int[] pointers) {
+        int lead = 0;
+        for (int k = 0; k < length; k++) {
+            if (freqs[k] < freqs[lead]) {
+                lead = k;
+            }
+            pointers[k] = 0;
+        }
+
+        int[] leadPositions = positions[lead];
+        int leadFreq = freqs[lead];
+        int li = 0;
+        while (li < leadFreq) {
+            int start = leadPositions[li] - offsets[lead];
+            int next = -1;
+            for (int k = 0; k < length && next < 0; k++) {
+                if (k == lead) {
+                    continue;
+                }
+                int target = start + offsets[k];
+                pointers[k] = gallop(positions[k], pointers[k], freqs[k], target);
+                if (pointers[k] == freqs[k]) {
+                    return false;
+                }
+                int found = positions[k][pointers[k]];
+                if (found != target) {
+                    // 按该词的下一个位置推算新的短语起点
+                    next = found - offsets[k] + offsets[lead];
+                }
+            }
+            if (next < 0) {
+                return true;
+            }
+            li = gallop(leadPositions, li + 1, leadFreq, next);
+        }
+        return false;
+    }
+
+    private double proximityBoost(int doc) {
+        int m = 0;
+        for (TermScorer scorer : scorers) {
+            if (scorer.docId() == doc) {
+                matched[m] = scorer;
+                pointers[m] = 0;
+                m++;
+            }
+        }
+        if (m < 2) {
+            return 0.0;
+        }
+
+        // 多路归并求覆盖所有命中词的最小窗口
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int minTerm = 0;
+            int minPos = Integer.MAX_VALUE;
+            int maxPos = Integer.MIN_VALUE;
+            for (int i = 0; i < m; i++) {
+                int pos = matched[i].positions()[pointers[i]];
+                if (pos < minPos) {
+                    minPos = pos;
+                    minTerm = i;
+                }
+                maxPos = Math.max(maxPos, pos);
+            }
+            best = Math.min(best, maxPos - minPos + 1);
+            if (best == m || ++pointers[minTerm] == matched[minTerm].freq()) {
+                break;
+            }
+        }
+        return PROXIMITY_WEIGHT * (m - 1) * m / best;
+    }
+
+    /**
+     * 在 values[from, to) 中查找第一个 &gt;= target 的下标，先倍增步长再二分
+     */
+    static int gallop(int[] values, int from, int to, int target) {
+        if (from >= to || values[from] >= target) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < to && values[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, to);
+        // 此时 values[low] < target，结果位于 (low, high]
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.analysis.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询解析，支持的语法：
+ * <pre>
+ * 词           默认为可选词；defaultRequired 为 true 时为必须词
+ * "短语"       必须按位置匹配的短语，未闭合的引号按短语处理
+ * +词 / +"短语"  必须出现
+ * -词 / -"短语"  不能出现
+ * a AND b      a 与 b 都必须出现
+ * a OR b       a 与 b 都是可选词
+ * NOT a        a 不能出现
+ * </pre>
+ * 运算符必须大写，与前后内容以空白分隔；显式的 +/- 前缀不会被运算符覆盖。
+ * 每个子句都经过与索引相同的文本分析，短语偏移取自分析得到的位置。
+ * 未加引号的排除子句分析出多个词时，只排除同时包含这些词的文档；加引号的排除短语按位置匹配。
+ */
+public class QueryParser {
+
+    private enum Occur {
+        SHOULD, MUST, MUST_NOT
+    }
+
+    private static class Clause {
+        final String text;
+        final boolean phrase;
+        // 由 +/- 前缀或引号确定，不受运算符影响
+        final boolean explicit;
+        Occur occur;
+
+        Clause(String text, boolean phrase, boolean explicit, Occur occur) {
+            this.text = text;
+            this.phrase = phrase;
+            this.explicit = explicit;
+            this.occur = occur;
+        }
+    }
+
+    public static ParsedQuery parse(String query, TextAnalyzer analyzer) {
+        return parse(query, analyzer, false);
+    }
+
+    public static ParsedQuery parse(String query, TextAnalyzer analyzer, boolean defaultRequired) {
+        ParsedQuery parsed = new ParsedQuery();
+        if (query == null) {
+            return parsed;
+        }
+
+        Occur defaultOccur = defaultRequired ? Occur.MUST : Occur.SHOULD;
+        List<Clause> clauses = new ArrayList<>();
+        // 运算符为下一个子句指定的类型
+        Occur next = null;
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            Occur prefix = null;
+            if (c == '+' || c == '-') {
+                prefix = c == '+' ? Occur.MUST : Occur.MUST_NOT;
+                i++;
+            }
+
+            String text;
+            boolean phrase = i < n && query.charAt(i) == '"';
+            if (phrase) {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = n;
+                }
+                text = query.substring(i + 1, end);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < n && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                text = query.substring(i, end);
+                i = end;
+            }
+            if (text.isEmpty()) {
+                continue;
+            }
+
+            if (prefix == null && !phrase) {
+                Clause previous = clauses.isEmpty() ? null : clauses.get(clauses.size() - 1);
+                if ("AND".equals(text)) {
+                    if (previous != null && !previous.explicit) {
+                        previous.occur = Occur.MUST;
+                    }
+                    next = Occur.MUST;
+                    continue;
+                }
+                if ("OR".equals(text)) {
+                    if (previous != null && !previous.explicit) {
+                        previous.occur = Occur.SHOULD;
+                    }
+                    next = Occur.SHOULD;
+                    continue;
+                }
+                if ("NOT".equals(text)) {
+                    next = Occur.MUST_NOT;
+                    continue;
+                }
+            }
+
+            Occur occur;
+            if (prefix != null) {
+                occur = prefix;
+            } else if (next == Occur.MUST_NOT) {
+                occur = Occur.MUST_NOT;
+            } else if (phrase) {
+                occur = Occur.MUST;
+            } else {
+                occur = next != null ? next : defaultOccur;
+            }
+            clauses.add(new Clause(text, phrase, prefix != null || phrase || next == Occur.MUST_NOT, occur));
+            next = null;
+        }
+
+        for (Clause clause : clauses) {
+            add(parsed, clause, analyzer.analyze(clause.text));
+        }
+        return parsed;
+    }
+
+    private static void add(ParsedQuery parsed, Clause clause, List<Token> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        List<String> terms = new ArrayList<>(tokens.size());
+        for (Token token : tokens) {
+            terms.add(token.getTerm());
+        }
+
+        boolean phrase = clause.phrase && tokens.size() > 1;
+        if (clause.occur == Occur.MUST_NOT && phrase) {
+            parsed.addExcludedPhrase(phrase(terms, tokens));
+        } else if (clause.occur == Occur.MUST_NOT) {
+            parsed.addExcluded(terms);
+        } else if (clause.occur == Occur.SHOULD) {
+            terms.forEach(parsed::addTerm);
+        } else if (!phrase) {
+            terms.forEach(parsed::addRequiredTerm);
+        } else {
+            parsed.addPhrase(phrase(terms, tokens));
+        }
+    }
+
+    private static ParsedQuery.Phrase phrase(List<String> terms, List<Token> tokens) {
+        int[] offsets = new int[tokens.size()];
+        int start = tokens.get(0).getPosition();
+        for (int i = 0; i < tokens.size(); i++) {
+            offsets[i] = tokens.get(i).getPosition() - start;
+        }
+        return new ParsedQuery.Phrase(terms, offsets);
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.searchenginedemo.search;
+
+public class ScoreDoc {
+    private final int docId;
+    private final double score;
+
+    public ScoreDoc(int docId, double score) {
+        this.docId = docId;
+        this.score = score;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
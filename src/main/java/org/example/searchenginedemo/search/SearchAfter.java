@@ -0,0 +1,75 @@
+package org.example.searchenginedemo.search;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * 深度分页的游标：上一页最后一个文档的 (得分, docId) 以及产生它时的索引代数。
+ * 对外编码为不透明的 URL 安全 Base64 字符串：
+ * <pre>
+ * [version:byte][generation:long][score:double][docId:int]
+ * </pre>
+ * 下一页只收集排名在该文档之后的文档，排序规则与 {@link TopKCollector} 相同：得分降序，同分时 docId 升序。
+ */
+public final class SearchAfter {
+    private static final byte VERSION = 1;
+    private static final int ENCODED_BYTES = 1 + 8 + 8 + 4;
+
+    private final double score;
+    private final int docId;
+    private final long generation;
+
+    public SearchAfter(double score, int docId, long generation) {
+        this.score = score;
+        this.docId = docId;
+        this.generation = generation;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 文档是否排在游标之后
+     */
+    public boolean isAfter(int otherDocId, double otherScore) {
+        return otherScore < score || (otherScore == score && otherDocId > docId);
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_BYTES);
+        buffer.put(VERSION).putLong(generation).putDouble(score).putInt(docId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * 解析游标，格式不正确时抛出 IllegalArgumentException
+     */
+    public static SearchAfter decode(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+        if (bytes.length != ENCODED_BYTES || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, ENCODED_BYTES - 1);
+        long generation = buffer.getLong();
+        double score = buffer.getDouble();
+        int docId = buffer.getInt();
+        if (Double.isNaN(score)) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        return new SearchAfter(score, docId, generation);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.CorpusStats;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.service.BM25Service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 单个查询词的评分器：包装倒排游标，预先计算IDF与得分上界
+ */
+public class TermScorer {
+    private final String term;
+    private final PostingsCursor cursor;
+    private final BM25Service bm25Service;
+    private final double idf;
+    private final double avgDocLength;
+    private final double maxScore;
+
+    // 当前文档的位置缓存，避免重复解码
+    private int[] positions = new int[8];
+    private int positionsDoc = -1;
+
+    public TermScorer(String term, byte[] postings, BM25Service bm25Service) {
+        this(term, ByteBuffer.wrap(postings), bm25Service);
+    }
+
+    /**
+     * postings 可以是内存数组的包装，也可以是映射文件上的切片
+     */
+    public TermScorer(String term, ByteBuffer postings, BM25Service bm25Service) {
+        this(term, postings, bm25Service, bm25Service.stats());
+    }
+
+    /**
+     * 同一查询的所有评分器共用一个统计快照，评分过程中不受并发索引的影响
+     */
+    public TermScorer(String term, ByteBuffer postings, BM25Service bm25Service, CorpusStats.Snapshot stats) {
+        this.term = term;
+        this.cursor = new PostingsCursor().reset(postings, 0);
+        this.bm25Service = bm25Service;
+        this.idf = bm25Service.idf(cursor.docCount(), stats.docCount());
+        this.avgDocLength = stats.averageLength();
+        this.maxScore = bm25Service.maxScore(idf, cursor.maxFreq());
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public PostingsCursor cursor() {
+        return cursor;
+    }
+
+    public int docId() {
+        return cursor.docId();
+    }
+
+    public int nextDoc() {
+        return cursor.nextDoc();
+    }
+
+    public int advance(int target) {
+        return cursor.advance(target);
+    }
+
+    /**
+     * 当前文档的BM25得分
+     */
+    public double score() {
+        return bm25Service.scoreWithIdf(cursor.freq(), idf, cursor.docId(), avgDocLength);
+    }
+
+    /**
+     * 当前文档中该词的全部位置(升序)，有效长度为 freq()
+     */
+    public int[] positions() {
+        int doc = cursor.docId();
+        if (positionsDoc != doc) {
+            int freq = cursor.freq();
+            if (positions.length < freq) {
+                positions = new int[Math.max(freq, positions.length << 1)];
+            }
+            for (int i = 0; i < freq; i++) {
+                positions[i] = cursor.nextPosition();
+            }
+            positionsDoc = doc;
+        }
+        return positions;
+    }
+
+    public int freq() {
+        return cursor.freq();
+    }
+
+    public double maxScore() {
+        return maxScore;
+    }
+
+    public int cost() {
+        return cursor.docCount();
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.searchenginedemo.search;
+
+/**
+ * 固定容量的最小堆，只保留得分最高的 K 个文档。
+ * 堆顶为当前第 K 名，其得分即剪枝阈值；同分时 docId 小的排名靠前。
+ * 指定 after 时只收集排在该游标之后的文档，用于深度分页。
+ */
+public class TopKCollector {
+    private final int capacity;
+    private final int[] docs;
+    private final double[] scores;
+    private final SearchAfter after;
+    private int size;
+
+    public TopKCollector(int capacity) {
+        this(capacity, null);
+    }
+
+    public TopKCollector(int capacity, SearchAfter after) {
+        this.after = after;
+        this.capacity = Math.max(0, capacity);
+        this.docs = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    /**
+     * 收集一个文档，返回是否进入了前 K 名
+     */
+    public boolean collect(int docId, double score) {
+        if (capacity == 0 || (after != null && !after.isAfter(docId, score))) {
+            return false;
+        }
+        if (size < capacity) {
+            docs[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (!lessThan(docs[0], scores[0], docId, score)) {
+            return false;
+        }
+        docs[0] = docId;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 新文档的得分必须超过该值才可能进入前 K 名；容量为 0 时任何文档都不能进入
+     */
+    public double threshold() {
+        if (capacity == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public SearchAfter getAfter() {
+        return after;
+    }
+
+    /**
+     * 按得分降序返回结果，调用后收集器被清空
+     */
+    public ScoreDoc[] topDocs() {
+        ScoreDoc[] result = new ScoreDoc[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = new ScoreDoc(docs[0], scores[0]);
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    // a 的排名是否低于 b
+    private static boolean lessThan(int docA, double scoreA, int docB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private void siftUp(int i) {
+        int doc = docs[i];
+        double score = scores[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!lessThan(doc, score, docs[parent], scores[parent])) {
+                break;
+            }
+            docs[i] = docs[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        docs[i] = doc;
+        scores[i] = score;
+    }
+
+    private void siftDown(int i) {
+        int doc = docs[i];
+        double score = scores[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && lessThan(docs[right], scores[right], docs[child], scores[child])) {
+                child = right;
+            }
+            if (!lessThan(docs[child], scores[child], doc, score)) {
+                break;
+            }
+            docs[i] = docs[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        docs[i] = doc;
+        scores[i] = score;
+    }
+}
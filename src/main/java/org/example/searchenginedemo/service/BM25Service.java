@@ -1,6 +1,9 @@
 package org.example.searchenginedemo.service;
 
+import org.example.searchenginedemo.entity.PageStats;
+import org.example.searchenginedemo.index.CorpusStats;
 import org.example.searchenginedemo.mapper.SearchMapper;
+import org.example.searchenginedemo.util.PageTables;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -9,13 +12,18 @@ public class BM25Service {
     @Autowired
     private SearchMapper searchMapper;
 
+    @Autowired
+    private NormsService normsService;
+
+    @Autowired
+    private ShardService shardService;
+
     // BM25参数
     private final double k1;
     private final double b;
 
-    // 缓存
-    private Double averageDocumentLength = null;
-    private Integer totalDocuments = null;
+    // 文档长度尚未加载完成时使用的数据库统计
+    private volatile CorpusStats.Snapshot fallbackStats = null;
 
     public BM25Service() {
         // 默认参数
@@ -23,44 +31,112 @@ public class BM25Service {
         this.b = 0.75;
     }
 
+    public double getK1() {
+        return k1;
+    }
+
+    public double getB() {
+        return b;
+    }
+
     public double score(String term, int docId, int termFrequency, int documentFrequency) {
+        return score(termFrequency, documentFrequency, docId);
+    }
+
+    /**
+     * 评分热路径：文档长度取自内存中的 NormsService，不访问数据库也不分配对象
+     */
+    public double score(int termFrequency, int documentFrequency, int docId) {
         if (termFrequency == 0 || documentFrequency == 0) {
             return 0.0;
         }
 
-        // 获取文档总数
-        int N = getTotalDocuments();
+        return scoreWithIdf(termFrequency, idf(documentFrequency), docId);
+    }
 
-        // 计算IDF: log((N - n + 0.5) / (n + 0.5)) + 1
-        double idf = Math.log((N - documentFrequency + 0.5) / (documentFrequency + 0.5) + 1.0);
+    /**
+     * 使用查询开始时预先计算好的IDF评分
+     */
+    public double scoreWithIdf(int termFrequency, double idf, int docId) {
+        return scoreWithIdf(termFrequency, idf, docId, getAverageDocumentLength());
+    }
 
-        // 获取文档长度和平均文档长度
-        int docLength = searchMapper.getPageLength(docId);
-        double avgDocLength = getAverageDocumentLength();
+    /**
+     * 平均长度由调用方从同一个统计快照中取得，保证一次查询内所有文档的归一化一致
+     */
+    public double scoreWithIdf(int termFrequency, double idf, int docId, double avgDocLength) {
+        // 未知长度按平均长度处理
+        int docLength = normsService.length(docId);
+        double normalizedLength = docLength > 0 && avgDocLength > 0 ? docLength / avgDocLength : 1.0;
 
         // 计算文档长度归一化因子
-        double normalizationFactor = 1.0 - b + b * (docLength / avgDocLength);
+        double normalizationFactor = 1.0 - b + b * normalizedLength;
 
         // 计算BM25分数
         return idf * ((k1 + 1.0) * termFrequency) / (k1 * normalizationFactor + termFrequency);
     }
 
-    public int getTotalDocuments() {
-        if (totalDocuments == null) {
-            totalDocuments = Integer.valueOf(searchMapper.getTotalPageCount());
+    /**
+     * 该词在任意文档上得分的上界：取最大词频，并假设文档长度为0(归一化因子最小)
+     */
+    public double maxScore(double idf, int maxTermFrequency) {
+        double bound = idf * ((k1 + 1.0) * maxTermFrequency) / (k1 * (1.0 - b) + maxTermFrequency);
+        return Math.nextUp(bound);
+    }
+
+    public double idf(int documentFrequency) {
+        return idf(documentFrequency, stats().docCount());
+    }
+
+    public double idf(int documentFrequency, long totalDocuments) {
+        // 计算IDF: log((N - n + 0.5) / (n + 0.5)) + 1
+        return Math.log((totalDocuments - documentFrequency + 0.5) / (documentFrequency + 0.5) + 1.0);
+    }
+
+    /**
+     * 当前的语料统计快照：文档长度加载完成后取 NormsService 增量维护的值，此前退回数据库聚合查询
+     */
+    public CorpusStats.Snapshot stats() {
+        CorpusStats.Snapshot snapshot = normsService.corpusStats();
+        if (snapshot.loaded()) {
+            return snapshot;
         }
-        return totalDocuments;
+        CorpusStats.Snapshot fallback;
+        while ((fallback = fallbackStats) == null) {
+            loadCorpusStats();
+        }
+        return fallback;
+    }
+
+    public int getTotalDocuments() {
+        return (int) stats().docCount();
     }
 
     public double getAverageDocumentLength() {
-        if (averageDocumentLength == null) {
-            averageDocumentLength = searchMapper.getAveragePageLength();
+        return stats().averageLength();
+    }
+
+    /**
+     * 并行读取各分表的统计并相加，得到全局的文档总数与平均长度
+     */
+    private synchronized void loadCorpusStats() {
+        if (fallbackStats != null) {
+            return;
+        }
+        long pageCount = 0;
+        long totalLength = 0;
+        long lengthCount = 0;
+        for (PageStats stats : shardService.fanOut(shard -> searchMapper.getPageStats(PageTables.tableName(shard)))) {
+            pageCount += stats.getPageCount();
+            totalLength += stats.getTotalLength();
+            lengthCount += stats.getLengthCount();
         }
-        return averageDocumentLength;
+        // 按有长度的文档数换算总长度，使平均长度与原先的 AVG(word_count) 一致
+        long scaledLength = lengthCount > 0 ? Math.round((double) totalLength / lengthCount * pageCount) : 0;
+        fallbackStats = new CorpusStats.Snapshot(pageCount, scaledLength, false);
     }
 
     public void clearCache() {
-        averageDocumentLength = null;
-        totalDocuments = null;
+        fallbackStats = null;
     }
 }
@@ -0,0 +1,295 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.entity.Context;
+import org.example.searchenginedemo.index.BulkIndexBuilder;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.util.PageTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全量重建索引，不经过 Kafka，也不逐行 concat 更新 word_dict。
+ * <p>
+ * 流程：暂停摄取流水线 → 记录各分表当前最大的已爬取id → 并行读取并分词各分表 →
+ * 外排序写出顺串 → k 路归并后批量写入 word_dict_build → RENAME TABLE 原子替换 word_dict →
+ * 只把实际读取过的页面标记为已分词 → 使缓存失效并恢复摄取流水线。
+ * 替换失败时页面保持原状态；快照之后爬取的页面(包括id在快照范围内但读取时尚未爬取完成的)
+ * 仍由增量的 Kafka 路径索引。
+ */
+@Service
+@ConditionalOnProperty(name = "search.role", havingValue = "primary", matchIfMissing = true)
+public class BulkIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkIndexService.class);
+
+    @Autowired
+    private PagesMapper pagesMapper;
+
+    @Autowired
+    private DictMapper dictMapper;
+
+    @Autowired
+    private TextAnalyzer textAnalyzer;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private IngestionService ingestionService;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    @Autowired
+    private PostingsService postingsService;
+
+    @Autowired
+    private QueryCacheService queryCacheService;
+
+    @Autowired
+    private BM25Service bm25Service;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Value("${search.bulk.spill-dir:${java.io.tmpdir}}")
+    private String spillDir;
+
+    // 每次从分表读取的页面数
+    private static final int READ_BATCH_SIZE = 256;
+    // 内存中缓冲的位置数上限，超过后写出顺串(约 16 字节/位置)
+    private static final long MAX_BUFFERED_POSITIONS = 20_000_000;
+    // 每条 INSERT 语句的行数与字节数上限，后者需小于 max_allowed_packet
+    private static final int ROWS_PER_STATEMENT = 500;
+    private static final long BYTES_PER_STATEMENT = 8L * 1024 * 1024;
+    // 替换后每条 UPDATE 标记的页面数
+    private static final int MARK_BATCH_SIZE = 1000;
+
+    // 分词并行度：分词受 CPU 限制，线程数不超过核数
+    private static final int SEGMENT_WORKERS = Math.min(PageTables.SHARD_COUNT, Runtime.getRuntime().availableProcessors());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // 重建专用的线程池：分词任务会持续整个重建过程，不能占用查询使用的分表线程池
+    private final ExecutorService segmentPool = Executors.newFixedThreadPool(SEGMENT_WORKERS);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong pagesIndexed = new AtomicLong();
+    private final AtomicLong termsWritten = new AtomicLong();
+    private volatile String phase = "idle";
+    private volatile String lastError;
+
+    /**
+     * 在后台开始一次全量重建，已有重建在进行时返回 false
+     */
+    public boolean startRebuild() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.submit(() -> {
+            try {
+                rebuild();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        boolean wasIngesting = ingestionService.isRunning();
+        pagesIndexed.set(0);
+        termsWritten.set(0);
+        lastError = null;
+
+        Path dir = null;
+        // 暂停摄取，避免重建期间发布的页面写入即将被替换的旧表
+        ingestionService.shutdown();
+        try {
+            phase = "snapshot";
+            List<Integer> maxIds = shardService.fanOut(shard -> {
+                Integer maxId = pagesMapper.selectMaxCrawledId(PageTables.tableName(shard));
+                return maxId == null ? 0 : maxId;
+            });
+
+            // 各分表实际读取并写入新词典的页面id
+            int[][] readIds = new int[PageTables.SHARD_COUNT][];
+            dir = Files.createTempDirectory(Paths.get(spillDir), "bulk-index-");
+            try (BulkIndexBuilder builder = new BulkIndexBuilder(dir, MAX_BUFFERED_POSITIONS)) {
+                phase = "segment";
+                List<CompletableFuture<Void>> tasks = new ArrayList<>(PageTables.SHARD_COUNT);
+                for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+                    final int s = shard;
+                    tasks.add(CompletableFuture.runAsync(
+                            () -> readIds[s] = segmentShard(s, maxIds.get(s), builder), segmentPool));
+                }
+                joinAll(tasks);
+                logger.info("全量重建：{} 个页面分词完成，写出 {} 个顺串", pagesIndexed.get(), builder.runCount());
+
+                phase = "load";
+                dictMapper.createBuildTable();
+                List<Map<String, Object>> rows = new ArrayList<>(ROWS_PER_STATEMENT);
+                long[] rowBytes = {0};
+                builder.merge((term, postings) -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("name", term);
+                    row.put("postings", postings);
+                    rows.add(row);
+                    rowBytes[0] += term.length() * 3L + postings.length;
+                    if (rows.size() == ROWS_PER_STATEMENT || rowBytes[0] >= BYTES_PER_STATEMENT) {
+                        insertRows(rows);
+                        rowBytes[0] = 0;
+                    }
+                });
+                insertRows(rows);
+            }
+
+            phase = "swap";
+            dictMapper.swapBuildTable();
+
+            // 替换成功后才标记，摄取流水线恢复前完成
+            phase = "mark";
+            List<CompletableFuture<Void>> marks = new ArrayList<>(PageTables.SHARD_COUNT);
+            for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+                final int s = shard;
+                marks.add(CompletableFuture.runAsync(() -> markDicDone(s, readIds[s]), segmentPool));
+            }
+            joinAll(marks);
+
+            indexGeneration.increment();
+            postingsService.invalidateAll();
+            queryCacheService.invalidateAll();
+            bm25Service.clearCache();
+            segmentStore.rebuildFromDatabase();
+
+            phase = "done";
+            logger.info("全量重建完成：{} 个页面，{} 个词，耗时 {} ms",
+                    pagesIndexed.get(), termsWritten.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            phase = "failed";
+            lastError = e.toString();
+            logger.error("全量重建失败，word_dict 保持不变", e);
+        } finally {
+            deleteQuietly(dir);
+            if (wasIngesting) {
+                ingestionService.start();
+            }
+        }
+    }
+
+    /**
+     * 读取并分词一个分表中 maxId 及之前的已爬取页面，返回读取到的页面id(升序)
+     */
+    private int[] segmentShard(int shard, int maxId, BulkIndexBuilder builder) {
+        String table = PageTables.tableName(shard);
+        int[] ids = new int[READ_BATCH_SIZE];
+        int count = 0;
+        int afterId = 0;
+        List<Context> pages;
+        do {
+            pages = pagesMapper.selectCrawledPages(table, afterId, maxId, READ_BATCH_SIZE);
+            if (pages.isEmpty()) {
+                break;
+            }
+            List<String> texts = new ArrayList<>(pages.size());
+            for (Context page : pages) {
+                texts.add(page.getText());
+            }
+            List<Map<String, List<Integer>>> results = textAnalyzer.analyzeAll(texts);
+            try {
+                for (int i = 0; i < pages.size(); i++) {
+                    builder.addPage(pages.get(i).getId(), results.get(i));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (count + pages.size() > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(count + pages.size(), ids.length << 1));
+            }
+            for (Context page : pages) {
+                ids[count++] = page.getId();
+            }
+            afterId = pages.get(pages.size() - 1).getId();
+            pagesIndexed.addAndGet(pages.size());
+        } while (pages.size() == READ_BATCH_SIZE);
+        return Arrays.copyOf(ids, count);
+    }
+
+    private void markDicDone(int shard, int[] ids) {
+        String table = PageTables.tableName(shard);
+        for (int from = 0; from < ids.length; from += MARK_BATCH_SIZE) {
+            List<Integer> batch = new ArrayList<>(MARK_BATCH_SIZE);
+            for (int i = from; i < Math.min(ids.length, from + MARK_BATCH_SIZE); i++) {
+                batch.add(ids[i]);
+            }
+            pagesMapper.markDicDone(table, batch);
+        }
+    }
+
+    private static void joinAll(List<CompletableFuture<Void>> tasks) {
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void insertRows(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        dictMapper.insertBuildPostings(rows);
+        termsWritten.addAndGet(rows.size());
+        rows.clear();
+    }
+
+    private void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            logger.warn("删除临时目录 {} 失败", dir, e);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("phase", phase);
+        status.put("pagesIndexed", pagesIndexed.get());
+        status.put("termsWritten", termsWritten.get());
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        segmentPool.shutdown();
+    }
+}
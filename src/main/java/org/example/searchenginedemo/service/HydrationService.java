@@ -0,0 +1,70 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.entity.vo.SearchResult;
+import org.example.searchenginedemo.mapper.SearchMapper;
+import org.example.searchenginedemo.search.ScoreDoc;
+import org.example.searchenginedemo.util.PageTables;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排序完成后的结果装配阶段：只为最终的前K个文档批量读取页面内容
+ */
+@Service
+public class HydrationService {
+
+    @Autowired
+    private SearchMapper searchMapper;
+
+    @Autowired
+    private ShardService shardService;
+
+    // 单条 IN 查询包含的最大id数
+    private static final int FETCH_BATCH_SIZE = 500;
+
+    /**
+     * 按排序结果构建搜索结果；withContent 为 false 时只返回id和得分，不访问数据库
+     */
+    public List<SearchResult> hydrate(ScoreDoc[] scoreDocs, boolean withContent) {
+        Map<Integer, String> contents = withContent ? fetchContents(scoreDocs) : Map.of();
+
+        List<SearchResult> results = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            results.add(new SearchResult(scoreDoc.getDocId(), contents.get(scoreDoc.getDocId()), scoreDoc.getScore()));
+        }
+        return results;
+    }
+
+    /**
+     * 按文档所在分表分组，各分表并行批量读取
+     */
+    private Map<Integer, String> fetchContents(ScoreDoc[] scoreDocs) {
+        List<Integer> docIds = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            docIds.add(scoreDoc.getDocId());
+        }
+
+        Map<Integer, String> contents = new HashMap<>();
+        for (Map<Integer, String> shardContents : shardService.fanOut(shardService.groupByShard(docIds), this::fetchShard)) {
+            contents.putAll(shardContents);
+        }
+        return contents;
+    }
+
+    private Map<Integer, String> fetchShard(int shard, List<Integer> docIds) {
+        String table = PageTables.tableName(shard);
+        Map<Integer, String> contents = new HashMap<>();
+        for (int from = 0; from < docIds.size(); from += FETCH_BATCH_SIZE) {
+            List<Integer> batch = docIds.subList(from, Math.min(docIds.size(), from + FETCH_BATCH_SIZE));
+            for (Map<String, Object> row : searchMapper.getPageContents(table, batch)) {
+                contents.put(((Number) row.get("id")).intValue(), (String) row.get("content"));
+            }
+        }
+        return contents;
+    }
+}
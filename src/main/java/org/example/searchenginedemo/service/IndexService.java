@@ -1,93 +1,198 @@
 package org.example.searchenginedemo.service;
 
+import org.example.searchenginedemo.index.IndexBuffer;
+import org.example.searchenginedemo.index.IndexGeneration;
 import org.example.searchenginedemo.mapper.DictMapper;
+import org.example.searchenginedemo.message.PageTerms;
+import org.example.searchenginedemo.metrics.IndexingMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
+@ConditionalOnProperty(name = "search.role", havingValue = "primary", matchIfMissing = true)
 public class IndexService {
     private static final Logger logger = LoggerFactory.getLogger(IndexService.class);
 
     @Autowired
     private DictMapper dictMapper;
 
-    // 批处理大小
-    private static final int BATCH_SIZE = 50;
-    // 批处理最大等待时间(毫秒)
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    @Autowired
+    private PostingsService postingsService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private NormsService normsService;
+
+    @Autowired
+    private IndexingMetrics indexingMetrics;
+
+    // 刷新阈值(缓冲的位置数)的初始值与上下限，根据刷新耗时自适应调整
+    private static final int INITIAL_FLUSH_POSITIONS = 50_000;
+    private static final int MIN_FLUSH_POSITIONS = 5_000;
+    private static final int MAX_FLUSH_POSITIONS = 1_000_000;
+    // 单次刷新的目标耗时(毫秒)，超过时缩小阈值
+    private static final long TARGET_FLUSH_LATENCY_MS = 1000;
+    // 缓冲最长等待时间(毫秒)
     private static final long BATCH_TIMEOUT_MS = 500;
+    // 每条 INSERT 语句包含的行数
+    private static final int ROWS_PER_STATEMENT = 500;
 
-    // 存储接收到的消息的队列
-    private final BlockingQueue<Map<String, String>> messageQueue = new LinkedBlockingQueue<>();
+    // 按词聚合的写入缓冲
+    private final IndexBuffer buffer = new IndexBuffer();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile int flushThreshold = INITIAL_FLUSH_POSITIONS;
     // 调度执行器，用于定时批量处理
     private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
 
     @PostConstruct
     public void init() {
-        // 启动批处理任务，每BATCH_TIMEOUT_MS毫秒检查一次是否有数据需要处理
+        // 定时检查缓冲是否超过最长等待时间
         scheduler.scheduleWithFixedDelay(
-                this::processBatch,
-                BATCH_TIMEOUT_MS,
+                this::flushIfDue,
                 BATCH_TIMEOUT_MS,
+                BATCH_TIMEOUT_MS / 5,
                 TimeUnit.MILLISECONDS
         );
 
+        indexingMetrics.gauge("index.buffer.positions", "写入缓冲中等待刷新的位置数", buffer, IndexBuffer::positionCount);
+        indexingMetrics.gauge("index.buffer.terms", "写入缓冲中等待刷新的词数", buffer, IndexBuffer::termCount);
+        indexingMetrics.gauge("index.buffer.age", "缓冲中最早数据的等待时间(毫秒)", buffer, IndexBuffer::ageMillis);
+        indexingMetrics.gauge("index.flush.threshold", "当前的自适应刷新阈值(位置数)", this, service -> service.flushThreshold);
+
         logger.info("Kafka消费者服务已启动，等待消息...");
     }
 
     @KafkaListener(topics = "word-segments", groupId = "search-engine-group")
-    public void listen(String message) {
+    public void listen(PageTerms message) {
+        if (message == null) {
+            // 无法解析的消息已由反序列化器记录
+            return;
+        }
         try {
-            // 解析消息
-            String[] parts = message.split("\\|");
-            if (parts.length >= 3) {
-                String word = parts[0];
-                String position = parts[1] + ":" + parts[2];
-
-                // 创建参数映射并加入队列
-                Map<String, String> params = new HashMap<>();
-                params.put("word", word);
-                params.put("position", position);
-                messageQueue.add(params);
-
-                // 如果队列中的消息数量达到批处理大小，立即触发处理
-                if (messageQueue.size() >= BATCH_SIZE) {
-                    processBatch();
-                }
+            buffer.add(message);
+            indexingMetrics.recordMessage(message.positionCount());
+            // 旧版消息不携带文档长度(为 0)，不能覆盖已知的长度
+            if (message.getTokenCount() > 0) {
+                segmentStore.addNorm(message.getPageId(), message.getTokenCount());
+                // 新文档立即计入语料统计，不等下一次文档长度刷新
+                normsService.putIfAbsent(message.getPageId(), message.getTokenCount());
+            }
+
+            // 缓冲的位置数达到阈值时在消费线程上直接刷新，同时起到背压作用
+            if (buffer.positionCount() >= flushThreshold) {
+                processBatch();
             }
         } catch (Exception e) {
-            logger.error("处理消息失败: {}", message, e);
+            logger.error("处理页面 {} 的分词消息失败", message.getPageId(), e);
         }
     }
 
-    @Transactional
+    private void flushIfDue() {
+        try {
+            if (buffer.ageMillis() >= BATCH_TIMEOUT_MS) {
+                processBatch();
+            }
+        } catch (Exception e) {
+            logger.error("定时刷新索引缓冲失败", e);
+        }
+    }
+
+    /**
+     * 分批写入缓冲的倒排尾部。每条 INSERT 各自提交，失败时已提交的部分保留，其余放回缓冲
+     */
     public void processBatch() {
-        List<Map<String, String>> batch = new ArrayList<>();
+        flushLock.lock();
+        try {
+            long positions = buffer.positionCount();
+            Map<String, String> batch = buffer.drain();
+            if (batch.isEmpty()) {
+                return;
+            }
 
-        // 从队列中取出消息，最多取BATCH_SIZE条
-        messageQueue.drainTo(batch, BATCH_SIZE);
+            // 按词排序写入，保证并发写入时加锁顺序一致
+            List<String> words = new ArrayList<>(batch.keySet());
+            Collections.sort(words);
 
-        if (!batch.isEmpty()) {
+            long start = System.currentTimeMillis();
+            int written = 0;
             try {
-                // 批量写入数据库
-                dictMapper.batchUpdateDict(batch);
-                logger.info("成功批量写入 {} 条记录到数据库", batch.size());
+                for (; written < words.size(); written += ROWS_PER_STATEMENT) {
+                    List<Map<String, String>> rows = new ArrayList<>();
+                    for (String word : words.subList(written, Math.min(words.size(), written + ROWS_PER_STATEMENT))) {
+                        Map<String, String> params = new HashMap<>();
+                        params.put("word", word);
+                        params.put("position", batch.get(word));
+                        rows.add(params);
+                    }
+                    dictMapper.upsertPostings(rows);
+                }
             } catch (Exception e) {
-                logger.error("批量写入数据库失败", e);
-                // 事务回滚会由Spring管理
-                throw e; // 重新抛出异常以触发事务回滚
+                // 未写入的部分放回缓冲，下次重试
+                Map<String, String> pending = new HashMap<>();
+                for (String word : words.subList(written, words.size())) {
+                    pending.put(word, batch.get(word));
+                }
+                buffer.restore(pending);
+                indexingMetrics.recordFlushFailure();
+                // 已写入数据库的部分同样写入本地索引段，并使其缓存失效
+                batch.keySet().removeAll(pending.keySet());
+                segmentStore.flush(batch);
+                if (!batch.isEmpty()) {
+                    invalidate(batch.keySet());
+                }
+                logger.error("批量写入数据库失败，{} 个词等待重试", pending.size(), e);
+                return;
             }
+            long latency = System.currentTimeMillis() - start;
+            adaptThreshold(latency, positions);
+            indexingMetrics.recordFlush(latency, words.size(), positions);
+            segmentStore.flush(batch);
+
+            invalidate(words);
+
+            logger.info("成功写入 {} 个词、{} 个位置，耗时 {} ms，下次刷新阈值 {}",
+                    words.size(), positions, latency, flushThreshold);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 索引内容已变化，使查询缓存与相关词的倒排表缓存失效
+     */
+    private void invalidate(Collection<String> words) {
+        indexGeneration.increment();
+        Set<String> invalidated = new HashSet<>();
+        for (String word : words) {
+            invalidated.add(word.toLowerCase());
+        }
+        postingsService.invalidate(invalidated);
+    }
+
+    /**
+     * 刷新过慢时缩小阈值以缩短单次事务；按容量触发且足够快时扩大阈值以合并更多写入
+     */
+    private void adaptThreshold(long latencyMs, long positions) {
+        if (latencyMs > TARGET_FLUSH_LATENCY_MS) {
+            flushThreshold = Math.max(MIN_FLUSH_POSITIONS, flushThreshold / 2);
+        } else if (positions >= flushThreshold) {
+            flushThreshold = Math.min(MAX_FLUSH_POSITIONS, flushThreshold + flushThreshold / 2);
         }
     }
 
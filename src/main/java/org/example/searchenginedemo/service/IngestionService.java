@@ -0,0 +1,347 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.entity.Context;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.message.PageTerms;
+import org.example.searchenginedemo.metrics.IndexingMetrics;
+import org.example.searchenginedemo.util.PageTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 持续运行的页面摄取流水线：读取 → 分词 → 发布。
+ * <p>
+ * 读取线程按 id 键集分页轮询各分表中待分词的页面；各阶段之间是有界队列，
+ * 下游变慢时 put 阻塞上游，内存占用与积压量无关。
+ * 一批页面的全部消息被 Kafka 确认后才将这批页面标记为 dic_done，
+ * 失败的批次保持未完成状态，读取线程扫描到分表末尾后会从头重新读取它们。
+ */
+@Service
+@ConditionalOnProperty(name = "search.role", havingValue = "primary", matchIfMissing = true)
+public class IngestionService {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionService.class);
+
+    @Autowired
+    private PagesMapper pagesMapper;
+
+    @Autowired
+    private TextAnalyzer textAnalyzer;
+
+    @Autowired
+    private KafkaTemplate<String, PageTerms> kafkaTemplate;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private IndexingMetrics indexingMetrics;
+
+    @Value("${search.ingest.auto-start:false}")
+    private boolean autoStart;
+
+    private static final String WORD_SEGMENT_TOPIC = "word-segments";
+    // 单条消息包含的最大位置数，超长页面拆分为多条消息
+    private static final int MAX_POSITIONS_PER_MESSAGE = 100_000;
+    // 每次从一个分表读取的页面数，也是标记进度的粒度
+    private static final int READ_BATCH_SIZE = 64;
+    // 阶段间队列容量(批)
+    private static final int QUEUE_CAPACITY = 16;
+    // 没有待处理页面时的轮询间隔(毫秒)
+    private static final long IDLE_POLL_MS = 5_000;
+    // 等待 Kafka 确认的最长时间(秒)
+    private static final long PUBLISH_TIMEOUT_SECONDS = 60;
+    private static final int SEGMENT_WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final int PUBLISH_WORKERS = 2;
+
+    private final BlockingQueue<PageBatch> segmentQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<SegmentedBatch> publishQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // 每个分表的读取位置，只由读取线程访问
+    private final int[] afterIds = new int[PageTables.SHARD_COUNT];
+    // 每个分表已读取但尚未完成(发布或失败)的批次数
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(PageTables.SHARD_COUNT);
+    private final AtomicLongArray pagesRead = new AtomicLongArray(PageTables.SHARD_COUNT);
+    private final AtomicLongArray pagesPublished = new AtomicLongArray(PageTables.SHARD_COUNT);
+    private final AtomicLongArray pagesFailed = new AtomicLongArray(PageTables.SHARD_COUNT);
+
+    private ExecutorService workers;
+    private volatile boolean running = false;
+    private volatile long startedAt;
+
+    @PostConstruct
+    public void init() {
+        indexingMetrics.gauge("ingest.queue.segment", "等待分词的批次数", segmentQueue, BlockingQueue::size);
+        indexingMetrics.gauge("ingest.queue.publish", "等待发布的批次数", publishQueue, BlockingQueue::size);
+        if (autoStart) {
+            start();
+        }
+    }
+
+    /**
+     * 启动流水线，已在运行时直接返回
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return false;
+        }
+        running = true;
+        startedAt = System.currentTimeMillis();
+        Arrays.fill(afterIds, 0);
+        workers = Executors.newFixedThreadPool(1 + SEGMENT_WORKERS + PUBLISH_WORKERS);
+        workers.submit(this::readLoop);
+        for (int i = 0; i < SEGMENT_WORKERS; i++) {
+            workers.submit(this::segmentLoop);
+        }
+        for (int i = 0; i < PUBLISH_WORKERS; i++) {
+            workers.submit(this::publishLoop);
+        }
+        logger.info("页面摄取流水线已启动: {} 个分词线程, {} 个发布线程", SEGMENT_WORKERS, PUBLISH_WORKERS);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void readLoop() {
+        while (running) {
+            boolean found = false;
+            // 轮流读取各分表，避免单个大分表饿死其他分表
+            for (int shard = 0; shard < PageTables.SHARD_COUNT && running; shard++) {
+                try {
+                    List<Context> pages = pagesMapper.selectPendingPages(
+                            PageTables.tableName(shard), afterIds[shard], READ_BATCH_SIZE);
+                    if (pages.isEmpty()) {
+                        // 到达末尾且没有在途批次时从头扫描，重新读取失败的批次与id较小的新页面
+                        if (inFlight.get(shard) == 0) {
+                            afterIds[shard] = 0;
+                        }
+                        continue;
+                    }
+                    found = true;
+                    afterIds[shard] = pages.get(pages.size() - 1).getId();
+                    pagesRead.addAndGet(shard, pages.size());
+                    inFlight.incrementAndGet(shard);
+                    segmentQueue.put(new PageBatch(shard, pages));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    logger.error("读取分表 {} 的待分词页面失败", PageTables.tableName(shard), e);
+                }
+            }
+            if (!found && !sleep(IDLE_POLL_MS)) {
+                return;
+            }
+        }
+    }
+
+    private void segmentLoop() {
+        while (running) {
+            PageBatch batch;
+            try {
+                batch = segmentQueue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == null) {
+                continue;
+            }
+
+            try {
+                long start = System.nanoTime();
+                List<String> texts = new ArrayList<>(batch.pages().size());
+                List<Integer> ids = new ArrayList<>(batch.pages().size());
+                for (Context context : batch.pages()) {
+                    texts.add(context.getText());
+                    ids.add(context.getId());
+                }
+                List<Map<String, List<Integer>>> results = textAnalyzer.analyzeAll(texts);
+
+                List<PageTerms> messages = new ArrayList<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    toMessages(ids.get(i), results.get(i), messages);
+                }
+                long tokens = 0;
+                for (PageTerms message : messages) {
+                    tokens += message.positionCount();
+                }
+                indexingMetrics.recordSegmented(System.nanoTime() - start, ids.size(), tokens);
+                publishQueue.put(new SegmentedBatch(batch.shard(), ids, messages));
+            } catch (InterruptedException e) {
+                complete(batch.shard(), batch.pages().size(), false);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                complete(batch.shard(), batch.pages().size(), false);
+                logger.error("分表 {} 中页面 {} 起的一批页面分词失败",
+                        PageTables.tableName(batch.shard()), batch.pages().get(0).getId(), e);
+            }
+        }
+    }
+
+    private void publishLoop() {
+        while (running) {
+            SegmentedBatch batch;
+            try {
+                batch = publishQueue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == null) {
+                continue;
+            }
+
+            String table = PageTables.tableName(batch.shard());
+            try {
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[batch.messages().size()];
+                for (int i = 0; i < futures.length; i++) {
+                    PageTerms message = batch.messages().get(i);
+                    futures[i] = kafkaTemplate.send(WORD_SEGMENT_TOPIC, String.valueOf(message.getPageId()), message);
+                }
+                // 全部消息确认后再标记进度，崩溃或发送失败时这批页面会被重新处理
+                CompletableFuture.allOf(futures).get(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                pagesMapper.markDicDone(table, batch.ids());
+                complete(batch.shard(), batch.ids().size(), true);
+            } catch (InterruptedException e) {
+                complete(batch.shard(), batch.ids().size(), false);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                complete(batch.shard(), batch.ids().size(), false);
+                logger.error("分表 {} 中页面 {} 起的一批页面发布失败", table, batch.ids().get(0), e);
+            }
+        }
+    }
+
+    private void complete(int shard, int pages, boolean published) {
+        if (published) {
+            pagesPublished.addAndGet(shard, pages);
+            indexingMetrics.recordPublished(pages);
+        } else {
+            pagesFailed.addAndGet(shard, pages);
+            indexingMetrics.recordFailed(pages);
+        }
+        inFlight.decrementAndGet(shard);
+    }
+
+    /**
+     * 每个页面一条消息，超长页面按词拆分为多条
+     */
+    private void toMessages(int pageId, Map<String, List<Integer>> wordPositions, List<PageTerms> messages) {
+        int tokenCount = 0;
+        for (List<Integer> positions : wordPositions.values()) {
+            tokenCount += positions.size();
+        }
+
+        PageTerms message = new PageTerms(pageId, tokenCount);
+        int messagePositions = 0;
+        for (Map.Entry<String, List<Integer>> entry : wordPositions.entrySet()) {
+            List<Integer> positions = entry.getValue();
+            if (messagePositions > 0 && messagePositions + positions.size() > MAX_POSITIONS_PER_MESSAGE) {
+                messages.add(message);
+                message = new PageTerms(pageId, tokenCount, message.getPart() + 1);
+                messagePositions = 0;
+            }
+
+            int[] array = new int[positions.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = positions.get(i);
+            }
+            message.getTermPositions().put(entry.getKey(), array);
+            messagePositions += array.length;
+        }
+
+        if (!message.getTermPositions().isEmpty()) {
+            messages.add(message);
+        }
+    }
+
+    /**
+     * 各分表的吞吐与积压：积压为数据库中尚未标记 dic_done 的已爬取页面数
+     */
+    public Map<String, Object> getStats() {
+        List<Long> backlogs = shardService.fanOut(shard -> pagesMapper.countPendingPages(PageTables.tableName(shard)));
+        double elapsedSeconds = running ? Math.max(1, System.currentTimeMillis() - startedAt) / 1000.0 : 0;
+
+        Map<String, Object> shards = new LinkedHashMap<>();
+        long totalPublished = 0;
+        long totalBacklog = 0;
+        for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+            Map<String, Object> shardStats = new LinkedHashMap<>();
+            shardStats.put("read", pagesRead.get(shard));
+            shardStats.put("published", pagesPublished.get(shard));
+            shardStats.put("failed", pagesFailed.get(shard));
+            shardStats.put("inFlightBatches", inFlight.get(shard));
+            shardStats.put("backlog", backlogs.get(shard));
+            shardStats.put("pagesPerSecond", elapsedSeconds > 0 ? pagesPublished.get(shard) / elapsedSeconds : 0.0);
+            shards.put(PageTables.tableName(shard), shardStats);
+            totalPublished += pagesPublished.get(shard);
+            totalBacklog += backlogs.get(shard);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("segmentQueue", segmentQueue.size());
+        stats.put("publishQueue", publishQueue.size());
+        stats.put("published", totalPublished);
+        stats.put("backlog", totalBacklog);
+        stats.put("pagesPerSecond", elapsedSeconds > 0 ? totalPublished / elapsedSeconds : 0.0);
+        stats.put("shards", shards);
+        return stats;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 停止流水线；队列中尚未发布的批次不会被标记，下次启动时重新处理
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        segmentQueue.clear();
+        publishQueue.clear();
+        for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+            inFlight.set(shard, 0);
+        }
+    }
+
+    private record PageBatch(int shard, List<Context> pages) {
+    }
+
+    private record SegmentedBatch(int shard, List<Integer> ids, List<PageTerms> messages) {
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.entity.PageNorm;
+import org.example.searchenginedemo.index.CorpusStats;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.util.PageTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档长度(word_count)的内存副本，以 docId 为下标存放在稠密 int 数组中，
+ * 评分时直接读取数组，不访问数据库。加载时顺带记录每个文档所在的分表，并增量维护语料统计。
+ */
+@Service
+public class NormsService {
+    private static final Logger logger = LoggerFactory.getLogger(NormsService.class);
+
+    @Autowired
+    private PagesMapper pagesMapper;
+
+    @Autowired
+    private ShardService shardService;
+
+    // 每次分页读取的行数
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    // 增量刷新间隔(毫秒)
+    private static final long REFRESH_INTERVAL_MS = 30_000;
+    // 待补齐的未知文档数量上限
+    private static final int MAX_MISSING_DOCS = 100_000;
+
+    // 下标为docId，值为文档长度，0表示未知
+    private volatile int[] lengths = new int[0];
+    // 每个分表已加载的最大id
+    private final int[] loadedIds = new int[PageTables.SHARD_COUNT];
+    // 评分时遇到的未知文档，由刷新任务批量补齐
+    private final Set<Integer> missingDocs = ConcurrentHashMap.newKeySet();
+    // 由已知文档长度增量维护的语料统计
+    private final CorpusStats corpusStats = new CorpusStats();
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(
+                this::refresh,
+                0,
+                REFRESH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * 返回文档长度；未知文档返回0并登记，等待下次刷新补齐
+     */
+    public int length(int docId) {
+        int[] current = lengths;
+        if (docId < current.length && current[docId] > 0) {
+            return current[docId];
+        }
+        if (missingDocs.size() < MAX_MISSING_DOCS) {
+            missingDocs.add(docId);
+        }
+        return 0;
+    }
+
+    /**
+     * 增量刷新：加载各分表中新增的文档，并补齐评分时遇到的未知文档
+     */
+    public void refresh() {
+        try {
+            int loaded = 0;
+            for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+                String table = PageTables.tableName(shard);
+                List<PageNorm> batch;
+                do {
+                    batch = pagesMapper.selectPageNorms(table, loadedIds[shard], LOAD_BATCH_SIZE);
+                    putAll(batch);
+                    for (PageNorm norm : batch) {
+                        shardService.assign(norm.getId(), shard);
+                        loadedIds[shard] = norm.getId();
+                    }
+                    loaded += batch.size();
+                } while (batch.size() == LOAD_BATCH_SIZE);
+            }
+
+            if (!missingDocs.isEmpty()) {
+                List<Integer> ids = new ArrayList<>(missingDocs);
+                missingDocs.removeAll(ids);
+                for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+                    List<PageNorm> found = pagesMapper.selectPageNormsByIds(PageTables.tableName(shard), ids);
+                    putAll(found);
+                    for (PageNorm norm : found) {
+                        shardService.assign(norm.getId(), shard);
+                    }
+                    loaded += found.size();
+                }
+            }
+
+            // 第一次完整读取所有分表后，语料统计可以代替数据库聚合查询
+            corpusStats.markLoaded();
+            if (loaded > 0) {
+                logger.info("文档长度已刷新，本次加载 {} 条", loaded);
+            }
+        } catch (Exception e) {
+            logger.error("刷新文档长度失败", e);
+        }
+    }
+
+    /**
+     * 写入单个文档长度，新索引的文档也可以直接调用
+     */
+    public synchronized void put(int docId, int length) {
+        int previous = store(docId, length);
+        corpusStats.add(docDelta(previous, length), length - previous);
+    }
+
+    /**
+     * 只在文档长度未知时写入。索引流水线用分词数作为新文档的初始长度，之后以数据库中的 word_count 为准
+     */
+    public synchronized void putIfAbsent(int docId, int length) {
+        int[] current = lengths;
+        if (docId >= current.length || current[docId] == 0) {
+            put(docId, length);
+        }
+    }
+
+    public CorpusStats.Snapshot corpusStats() {
+        return corpusStats.snapshot();
+    }
+
+    private synchronized void putAll(List<PageNorm> norms) {
+        long docDelta = 0;
+        long lengthDelta = 0;
+        for (PageNorm norm : norms) {
+            int previous = store(norm.getId(), norm.getWordCount());
+            docDelta += docDelta(previous, norm.getWordCount());
+            lengthDelta += norm.getWordCount() - previous;
+        }
+        corpusStats.add(docDelta, lengthDelta);
+    }
+
+    // 长度为0视为未知，不计入文档数
+    private static int docDelta(int previous, int length) {
+        return (length > 0 ? 1 : 0) - (previous > 0 ? 1 : 0);
+    }
+
+    /**
+     * 写入数组并返回原来的长度，调用方持有锁
+     */
+    private int store(int docId, int length) {
+        int[] current = lengths;
+        if (docId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(docId + 1, current.length + (current.length >> 1)));
+            current[docId] = length;
+            lengths = current;
+            return 0;
+        }
+        int previous = current[docId];
+        current[docId] = length;
+        return previous;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
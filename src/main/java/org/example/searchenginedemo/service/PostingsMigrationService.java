@@ -0,0 +1,95 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将 word_dict.positions 中的文本倒排折叠进二进制 postings 列。
+ * 既用于存量数据的一次性迁移，也定期折叠索引服务新追加的文本尾部。
+ */
+@Service
+@ConditionalOnProperty(name = "search.role", havingValue = "primary", matchIfMissing = true)
+public class PostingsMigrationService {
+    private static final Logger logger = LoggerFactory.getLogger(PostingsMigrationService.class);
+
+    @Autowired
+    private DictMapper dictMapper;
+
+    // 每批读取的词条数
+    private static final int MIGRATION_BATCH_SIZE = 200;
+    // 定时折叠间隔(毫秒)
+    private static final long MIGRATION_INTERVAL_MS = 60_000;
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(
+                this::migrateAll,
+                MIGRATION_INTERVAL_MS,
+                MIGRATION_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * 按词名顺序遍历所有待折叠的词条，返回成功折叠的数量
+     */
+    public int migrateAll() {
+        int migrated = 0;
+        String afterName = "";
+        try {
+            List<Map<String, Object>> batch;
+            do {
+                batch = dictMapper.selectPendingPostings(afterName, MIGRATION_BATCH_SIZE);
+                for (Map<String, Object> row : batch) {
+                    afterName = (String) row.get("name");
+                    if (migrateRow(afterName, (byte[]) row.get("postings"), (String) row.get("positions"))) {
+                        migrated++;
+                    }
+                }
+            } while (batch.size() == MIGRATION_BATCH_SIZE);
+
+            if (migrated > 0) {
+                logger.info("已将 {} 个词条的文本倒排折叠为二进制格式", migrated);
+            }
+        } catch (Exception e) {
+            logger.error("折叠倒排表失败，停止于词条 '{}'", afterName, e);
+        }
+        return migrated;
+    }
+
+    private boolean migrateRow(String name, byte[] postings, String tail) {
+        byte[] merged = PostingsCodec.merge(postings, tail);
+        // 并发追加只会加在尾部之后，条件更新仍然成功；只有其他进程(如压缩)改写过该词条时才会失败
+        int updated = dictMapper.foldPostings(name, postings, merged, tail);
+        if (updated == 0) {
+            logger.debug("词条 '{}' 的倒排尾部已变化，跳过本轮折叠", name);
+        }
+        return updated > 0;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.searchenginedemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.PostingsSource;
+import org.example.searchenginedemo.mapper.SearchMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 词项倒排表的读取与缓存。
+ * 缓存的是已合并文本尾部的二进制倒排表，可直接交给 PostingsCursor 解码；按字节数限制容量。
+ * 索引服务写入某个词后调用 invalidate 使其失效。
+ */
+@Service
+public class PostingsService implements PostingsSource {
+    private static final Logger logger = LoggerFactory.getLogger(PostingsService.class);
+
+    @Autowired
+    private SearchMapper searchMapper;
+
+    // 缓存容量上限(字节)
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024;
+    // 预热时每批查询的词数
+    private static final int WARM_UP_BATCH_SIZE = 50;
+    // 失效计数的分段数
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final Cache<String, byte[]> cache = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHE_BYTES)
+            .weigher((String term, byte[] postings) -> 64 + 2 * term.length() + postings.length)
+            .recordStats()
+            .build();
+
+    // 每个分段的失效次数：加载前后不一致说明期间有写入，结果不再放入缓存
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * 返回各词的二进制倒排表，词典中不存在的词不会出现在结果中
+     */
+    @Override
+    public Map<String, ByteBuffer> getPostings(Collection<String> terms) {
+        Map<String, ByteBuffer> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String term : terms) {
+            byte[] postings = cache.getIfPresent(term);
+            if (postings != null) {
+                result.put(term, ByteBuffer.wrap(postings));
+            } else {
+                missing.add(term);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            load(missing).forEach((term, postings) -> result.put(term, ByteBuffer.wrap(postings)));
+        }
+        return result;
+    }
+
+    /**
+     * 预先加载热门词的倒排表
+     */
+    public void warmUp(List<String> terms) {
+        int loaded = 0;
+        for (int i = 0; i < terms.size(); i += WARM_UP_BATCH_SIZE) {
+            List<String> batch = terms.subList(i, Math.min(terms.size(), i + WARM_UP_BATCH_SIZE));
+            loaded += load(batch).size();
+        }
+        logger.info("倒排表缓存预热完成，加载 {} 个热门词", loaded);
+    }
+
+    public void invalidate(Collection<String> terms) {
+        for (String term : terms) {
+            invalidations.incrementAndGet(stripe(term));
+            cache.invalidate(term);
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("entryCount", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction ->
+                result.put("weightedBytes", eviction.weightedSize().orElse(0)));
+        return result;
+    }
+
+    private Map<String, byte[]> load(List<String> terms) {
+        long[] versions = new long[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            versions[i] = invalidations.get(stripe(terms.get(i)));
+        }
+
+        Map<String, byte[]> loaded = new HashMap<>();
+        for (Map<String, Object> row : searchMapper.searchTerms(terms)) {
+            String term = ((String) row.get("name")).toLowerCase();
+            // 合并二进制倒排表与尚未折叠的文本尾部
+            byte[] postings = PostingsCodec.merge((byte[]) row.get("postings"), (String) row.get("positions"));
+            loaded.put(term, postings);
+        }
+
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            byte[] postings = loaded.get(term);
+            if (postings != null && invalidations.get(stripe(term)) == versions[i]) {
+                cache.put(term, postings);
+            }
+        }
+        return loaded;
+    }
+
+    private static int stripe(String term) {
+        return (term.hashCode() & 0x7fffffff) % INVALIDATION_STRIPES;
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.searchenginedemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.example.searchenginedemo.entity.vo.SearchResult;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果缓存。
+ * 以 (规范化查询, topK, 是否含内容, 索引代数) 为键，使用 Caffeine(W-TinyLFU) 按估算字节数限制容量；
+ * 并发的相同查询只执行一次，其余请求等待同一个结果。索引代数变化后旧条目不再命中，随淘汰回收。
+ */
+@Service
+public class QueryCacheService {
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    private static final Set<String> OPERATORS = Set.of("AND", "OR", "NOT");
+
+    // 缓存容量上限(估算字节数)
+    private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final Cache<CacheKey, List<SearchResult>> cache = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHE_BYTES)
+            .weigher(QueryCacheService::weigh)
+            .recordStats()
+            .build();
+
+    // 正在执行中的查询，用于合并并发的相同请求
+    private final ConcurrentHashMap<CacheKey, CompletableFuture<List<SearchResult>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public List<SearchResult> get(String query, int topK, boolean withContent, Supplier<List<SearchResult>> loader) {
+        CacheKey key = new CacheKey(normalize(query), topK, withContent, indexGeneration.current());
+
+        List<SearchResult> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<List<SearchResult>> future = new CompletableFuture<>();
+        CompletableFuture<List<SearchResult>> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            return running.join();
+        }
+
+        try {
+            // 缓存的结果会被多个请求共享，必须不可变
+            List<SearchResult> results = List.copyOf(loader.get());
+            cache.put(key, results);
+            future.complete(results);
+            return results;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("coalescedCount", coalesced.sum());
+        result.put("entryCount", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction ->
+                result.put("weightedBytes", eviction.weightedSize().orElse(0)));
+        return result;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // 规范化查询：去除首尾空白、合并连续空白并转为小写；大写的 AND/OR/NOT 是运算符，保持不变
+    private static String normalize(String query) {
+        String[] words = query.trim().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            if (!OPERATORS.contains(words[i])) {
+                words[i] = words[i].toLowerCase();
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    // 估算条目占用的字节数
+    private static int weigh(CacheKey key, List<SearchResult> results) {
+        long bytes = 64 + 2L * key.query().length();
+        for (SearchResult result : results) {
+            bytes += 48;
+            if (result.getContent() != null) {
+                bytes += 40 + 2L * result.getContent().length();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private record CacheKey(String query, int topK, boolean withContent, long generation) {
+    }
+}
@@ -0,0 +1,335 @@
+package org.example.searchenginedemo.service;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.example.searchenginedemo.index.IndexBuffer;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.message.PageTerms;
+import org.example.searchenginedemo.metrics.IndexingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 只读副本的索引(search.role=replica)。
+ * <p>
+ * 以独立的消费组消费 word-segments，缓冲后直接写成本地索引段，不访问 word_dict。
+ * 每次段写出成功后把已应用的各分区偏移量写入段目录；重启时从该偏移量之后继续消费，
+ * 没有记录的分区从头重放，因此副本的索引只由本地文件决定，与消费组提交的偏移量无关。
+ * 段写出后、偏移量写入前退出时会重放最后一批消息，倒排表合并时对重复的位置去重。
+ * <p>
+ * 页面的第一条消息(part=0)表示该页面的一次新的索引：写出时页面在已有段中的倒排项作废，
+ * 避免重新索引后新旧倒排项同时存在、词频被重复计算；同一页面的新版本到达时缓冲中还有旧版本，
+ * 先写出旧版本。旧格式的消息不携带序号，按追加处理。
+ * <p>
+ * 分区分配时与之后每隔一段时间通过 AdminClient 读取各分区的日志末端偏移量，
+ * 消费线程每处理一条消息再用最近一次拉取的结果更新(不产生网络请求)。
+ * 末端偏移量与已应用偏移量之差即副本的延迟，负载均衡据此只把查询路由到已追上的副本；
+ * 任何已分配的分区末端偏移量未知时，副本不视为已追上。
+ */
+@Service
+@ConditionalOnProperty(name = "search.role", havingValue = "replica")
+public class ReplicaIndexService implements ConsumerSeekAware {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaIndexService.class);
+
+    static final String TOPIC = "word-segments";
+    private static final String OFFSETS_FILE = "replica.offsets";
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private NormsService normsService;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    @Autowired
+    private IndexingMetrics indexingMetrics;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    // 延迟不超过该消息数时视为已追上
+    @Value("${search.replica.max-lag:1000}")
+    private long maxLag;
+
+    // 缓冲的位置数达到该值时写出一个段
+    private static final int FLUSH_POSITIONS = 200_000;
+    // 缓冲最长等待时间(毫秒)
+    private static final long BATCH_TIMEOUT_MS = 1000;
+    // 读取日志末端偏移量的间隔与超时(毫秒)
+    private static final long END_OFFSETS_INTERVAL_MS = 10_000;
+    private static final long END_OFFSETS_TIMEOUT_MS = 5_000;
+
+    private final IndexBuffer buffer = new IndexBuffer();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 已缓冲消息的最大偏移量，与缓冲一起写出，由 flushLock 保护
+    private final Map<Integer, Long> bufferedOffsets = new HashMap<>();
+    // 缓冲中出现的页面，以及其中需要作废旧倒排项的页面，由 flushLock 保护
+    private final BitSet bufferedDocs = new BitSet();
+    private final BitSet supersededDocs = new BitSet();
+    // 已写入本地段的最大偏移量
+    private final Map<Integer, Long> appliedOffsets = new ConcurrentHashMap<>();
+    // 最近一次拉取时各分区的日志末端偏移量
+    private final Map<Integer, Long> endOffsets = new ConcurrentHashMap<>();
+    // 当前分配到的分区
+    private final Set<TopicPartition> assigned = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+    private AdminClient adminClient;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path file = offsetsFile();
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            }
+            for (String partition : properties.stringPropertyNames()) {
+                appliedOffsets.put(Integer.parseInt(partition), Long.parseLong(properties.getProperty(partition)));
+            }
+        }
+        adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        scheduler.scheduleWithFixedDelay(this::flushIfDue, BATCH_TIMEOUT_MS, BATCH_TIMEOUT_MS / 5, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> refreshEndOffsets(assigned),
+                END_OFFSETS_INTERVAL_MS, END_OFFSETS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        indexingMetrics.gauge("replica.lag", "副本尚未应用的消息数", this, ReplicaIndexService::lag);
+        logger.info("只读副本已启动，已应用的偏移量: {}", appliedOffsets);
+    }
+
+    /**
+     * 分区分配后从本地记录的偏移量之后继续，没有记录的分区从头重放
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        List<TopicPartition> unknown = new ArrayList<>();
+        for (TopicPartition partition : assignments.keySet()) {
+            Long applied = appliedOffsets.get(partition.partition());
+            if (applied != null) {
+                callback.seek(partition.topic(), partition.partition(), applied + 1);
+            } else {
+                unknown.add(partition);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            callback.seekToBeginning(unknown);
+        }
+        assigned.addAll(assignments.keySet());
+        refreshEndOffsets(assignments.keySet());
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        assigned.removeAll(partitions);
+        for (TopicPartition partition : partitions) {
+            endOffsets.remove(partition.partition());
+        }
+    }
+
+    /**
+     * 读取分区当前的日志末端偏移量，失败时保留原值，末端未知的分区使副本保持未追上状态
+     */
+    private void refreshEndOffsets(Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            request.put(partition, OffsetSpec.latest());
+        }
+        try {
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> result =
+                    adminClient.listOffsets(request).all().get(END_OFFSETS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            result.forEach((partition, info) -> endOffsets.merge(partition.partition(), info.offset(), Math::max));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("读取分区末端偏移量失败: {}", e.getMessage());
+        }
+    }
+
+    @KafkaListener(topics = TOPIC, groupId = "${search.replica.group-id:search-replica-${HOSTNAME:local}}")
+    public void listen(ConsumerRecord<String, PageTerms> record, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        consumer.currentLag(partition).ifPresent(lag ->
+                endOffsets.merge(record.partition(), consumer.position(partition) + lag, Math::max));
+
+        PageTerms message = record.value();
+        flushLock.lock();
+        try {
+            if (message != null) {
+                // 无法解析的消息已由反序列化器记录，只推进偏移量
+                int pageId = message.getPageId();
+                boolean reindexed = message.getPart() == 0;
+                if (reindexed && bufferedDocs.get(pageId)) {
+                    flush();
+                    if (bufferedDocs.get(pageId)) {
+                        // 旧版本未能写出，抛出异常由容器重新投递本条消息
+                        throw new IllegalStateException("页面 " + pageId + " 的上一版本写出失败");
+                    }
+                }
+                buffer.add(message);
+                indexingMetrics.recordMessage(message.positionCount());
+                if (reindexed) {
+                    supersededDocs.set(pageId);
+                }
+                // 旧版消息不携带文档长度(为 0)，不能覆盖已知的长度
+                if (message.getTokenCount() > 0) {
+                    segmentStore.addNorm(pageId, message.getTokenCount());
+                    if (reindexed) {
+                        normsService.put(pageId, message.getTokenCount());
+                    } else {
+                        normsService.putIfAbsent(pageId, message.getTokenCount());
+                    }
+                }
+                bufferedDocs.set(pageId);
+            }
+            bufferedOffsets.merge(record.partition(), record.offset(), Math::max);
+            if (buffer.positionCount() >= FLUSH_POSITIONS) {
+                flush();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushIfDue() {
+        flushLock.lock();
+        try {
+            // 只收到无法解析的消息时缓冲为空，同样需要记录偏移量
+            if (buffer.ageMillis() >= BATCH_TIMEOUT_MS || buffer.termCount() == 0) {
+                flush();
+            }
+        } catch (Exception e) {
+            logger.error("定时写出副本索引失败", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 写出缓冲的倒排尾部，成功后再记录偏移量；失败时放回缓冲，偏移量不前进
+     */
+    private void flush() {
+        if (bufferedOffsets.isEmpty()) {
+            return;
+        }
+        long positions = buffer.positionCount();
+        Map<String, String> batch = buffer.drain();
+        long start = System.currentTimeMillis();
+        if (!segmentStore.flush(batch, supersededDocs)) {
+            buffer.restore(batch);
+            indexingMetrics.recordFlushFailure();
+            return;
+        }
+        bufferedDocs.clear();
+        supersededDocs.clear();
+        Map<Integer, Long> applied = new HashMap<>(appliedOffsets);
+        bufferedOffsets.forEach((partition, offset) -> applied.merge(partition, offset, Math::max));
+        try {
+            writeOffsets(applied);
+        } catch (IOException e) {
+            // 段已写出，下次写出时一并记录；期间重启会重放这一批
+            logger.error("记录副本偏移量失败", e);
+            return;
+        }
+        appliedOffsets.putAll(applied);
+        bufferedOffsets.clear();
+        if (!batch.isEmpty()) {
+            indexGeneration.increment();
+            indexingMetrics.recordFlush(System.currentTimeMillis() - start, batch.size(), positions);
+        }
+    }
+
+    private void writeOffsets(Map<Integer, Long> offsets) throws IOException {
+        Properties properties = new Properties();
+        offsets.forEach((partition, offset) -> properties.setProperty(partition.toString(), offset.toString()));
+        Path file = offsetsFile();
+        Path tmp = file.resolveSibling(OFFSETS_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp)) {
+            properties.store(writer, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path offsetsFile() {
+        return segmentStore.getDir().resolve(OFFSETS_FILE);
+    }
+
+    /**
+     * 已分配分区的日志末端与已应用偏移量之差的总和，末端未知的分区不计入
+     */
+    public long lag() {
+        long lag = 0;
+        for (TopicPartition partition : assigned) {
+            Long end = endOffsets.get(partition.partition());
+            if (end != null) {
+                long applied = appliedOffsets.getOrDefault(partition.partition(), -1L);
+                lag += Math.max(0, end - applied - 1);
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * 已分配到分区、所有分区的末端偏移量已知、本地段可用且延迟不超过 search.replica.max-lag
+     */
+    public boolean isCaughtUp() {
+        if (assigned.isEmpty() || !segmentStore.isReady()) {
+            return false;
+        }
+        for (TopicPartition partition : assigned) {
+            if (!endOffsets.containsKey(partition.partition())) {
+                return false;
+            }
+        }
+        return lag() <= maxLag;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("caughtUp", isCaughtUp());
+        status.put("lag", lag());
+        status.put("maxLag", maxLag);
+        status.put("appliedOffsets", new TreeMap<>(appliedOffsets));
+        status.put("endOffsets", new TreeMap<>(endOffsets));
+        status.put("bufferedPositions", buffer.positionCount());
+        return status;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        flushLock.lock();
+        try {
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+        adminClient.close();
+    }
+}
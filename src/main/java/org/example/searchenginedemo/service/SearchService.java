@@ -1,22 +1,47 @@
 package org.example.searchenginedemo.service;
 
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.index.CorpusStats;
+import org.example.searchenginedemo.index.ImpactCursor;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.index.LiveDocs;
+import org.example.searchenginedemo.index.PostingsSource;
 import org.example.searchenginedemo.mapper.SearchMapper;
+import org.example.searchenginedemo.metrics.SearchMetrics;
+import org.example.searchenginedemo.entity.vo.SearchPage;
 import org.example.searchenginedemo.entity.vo.SearchResult;
-import org.example.searchenginedemo.util.PositionParser;
+import org.example.searchenginedemo.search.ExclusionFilter;
+import org.example.searchenginedemo.search.ImpactEvaluator;
+import org.example.searchenginedemo.search.MaxScoreEvaluator;
+import org.example.searchenginedemo.search.ParsedQuery;
+import org.example.searchenginedemo.search.ProximityScorer;
+import org.example.searchenginedemo.search.QueryParser;
+import org.example.searchenginedemo.search.ScoreDoc;
+import org.example.searchenginedemo.search.SearchAfter;
+import org.example.searchenginedemo.search.TermScorer;
+import org.example.searchenginedemo.search.TopKCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class SearchService {
     private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
     private static final String SEARCH_TERMS_KEY = "search:terms:count";
+    // 启动时预热倒排表缓存的热门词数量
+    private static final int WARM_UP_TERMS = 1000;
+    // 导出时每次装配的结果数
+    private static final int EXPORT_CHUNK_SIZE = 500;
 
     @Autowired
     private SearchMapper searchMapper;
@@ -24,93 +49,291 @@ public class SearchService {
     @Autowired
     private BM25Service bm25Service;
 
+    @Autowired
+    private HydrationService hydrationService;
+
+    @Autowired
+    private QueryCacheService queryCacheService;
+
+    @Autowired
+    private PostingsService postingsService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private TextAnalyzer textAnalyzer;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    @Autowired
+    private LiveDocs liveDocs;
+
+    @Autowired
+    private TermCountService termCountService;
+
+    @Autowired
+    private SuggestService suggestService;
+
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    // 未加运算符的查询词之间的默认关系：OR 为可选词，AND 为必须词
+    @Value("${search.default-operator:OR}")
+    private String defaultOperator;
+
     @PostConstruct
     public void init() {
         logger.info("初始化搜索服务...");
         // 预热缓存
         bm25Service.getTotalDocuments();
-//        bm25Service.getAverageDocumentLength();
+        // 只读副本只从本地索引段读取倒排表，不需要预热数据库缓存
+        if (segmentStore.isReplica()) {
+            return;
+        }
+        // 后台按热门查询词预热倒排表缓存
+        CompletableFuture.runAsync(() -> {
+            List<String> hotTerms = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : getTopSearchTerms(WARM_UP_TERMS)) {
+                hotTerms.add(entry.getKey());
+            }
+            postingsService.warmUp(hotTerms);
+        }).exceptionally(e -> {
+            logger.error("倒排表缓存预热失败", e);
+            return null;
+        });
     }
 
     public List<SearchResult> search(String query, int topK) {
-        if (query == null || query.trim().isEmpty()) {
+        return search(query, topK, true);
+    }
+
+    /**
+     * withContent 为 false 时只返回文档id和得分，跳过页面内容的读取
+     */
+    public List<SearchResult> search(String query, int topK, boolean withContent) {
+        if (query == null || query.trim().isEmpty() || topK <= 0) {
             return Collections.emptyList();
         }
+        long start = System.nanoTime();
+        // 缓存命中的查询同样计入查询词统计
+        ParsedQuery parsedQuery = parse(query);
+        List<SearchResult> results = queryCacheService.get(query, topK, withContent,
+                () -> executeSearch(query, parsedQuery, topK, withContent));
+        searchMetrics.recordSearch(System.nanoTime() - start);
+        return results;
+    }
 
-        // 对查询进行分词
-        String[] queryTerms = query.toLowerCase().trim().split("\\s+");
-        List<String> terms = Arrays.asList(queryTerms);
+    /**
+     * 深度分页：cursor 为上一页返回的游标，为空时返回第一页。
+     * 每一页都只收集排在游标之后的 size 个文档，不需要对前面各页的文档排序和装配
+     *
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public SearchPage searchPage(String query, int size, String cursor, boolean withContent) {
+        SearchAfter after = cursor == null || cursor.isEmpty() ? null : SearchAfter.decode(cursor);
+        long generation = indexGeneration.current();
+        if (query == null || query.trim().isEmpty() || size <= 0) {
+            return new SearchPage(Collections.emptyList(), null, generation, false);
+        }
 
-        logger.info("搜索查询: '{}', 分词为: {}", query, terms);
+        long start = System.nanoTime();
+        List<SearchResult> results = executeSearch(query, parse(query), size, withContent, after, true);
+        searchMetrics.recordSearch(System.nanoTime() - start);
 
-        // 增加每个查询词的计数
-//        incrementTermCounts(terms);
+        String nextCursor = null;
+        if (!results.isEmpty() && results.size() == size) {
+            SearchResult last = results.get(results.size() - 1);
+            nextCursor = new SearchAfter(last.getScore(), last.getPageId(), generation).encode();
+        }
+        // 游标产生后索引有更新时，各页之间可能出现少量重复或遗漏
+        boolean indexChanged = after != null && after.getGeneration() != generation;
+        return new SearchPage(results, nextCursor, generation, indexChanged);
+    }
 
-        // 执行数据库查询，获取包含查询词的文档
-        List<Map<String, Object>> searchResults = searchMapper.searchTerms(terms);
+    /**
+     * 导出前 limit 个结果：只求值排序一次，再按块装配并交给 sink，适合流式输出大结果集
+     */
+    public void export(String query, int limit, boolean withContent, Consumer<List<SearchResult>> sink) {
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return;
+        }
+        ScoreDoc[] topDocs = rank(query, parse(query), limit, null, true);
+        for (int from = 0; from < topDocs.length; from += EXPORT_CHUNK_SIZE) {
+            ScoreDoc[] chunk = Arrays.copyOfRange(topDocs, from, Math.min(topDocs.length, from + EXPORT_CHUNK_SIZE));
+            sink.accept(hydrationService.hydrate(chunk, withContent));
+        }
+        logger.info("查询 '{}' 导出 {} 个结果", query, topDocs.length);
+    }
 
-        // 构建文档得分映射
-        Map<Integer, Double> documentScores = new HashMap<>();
+    private List<SearchResult> executeSearch(String query, ParsedQuery parsedQuery, int topK, boolean withContent) {
+        return executeSearch(query, parsedQuery, topK, withContent, null, false);
+    }
 
-        // 处理每个查询词的结果
-        for (Map<String, Object> result : searchResults) {
-            String term = (String) result.get("name");
-            String positionsString = (String) result.get("positions");
+    private List<SearchResult> executeSearch(String query, ParsedQuery parsedQuery, int topK, boolean withContent,
+                                             SearchAfter after, boolean paged) {
+        ScoreDoc[] topDocs = rank(query, parsedQuery, topK, after, paged);
 
-            // 解析位置信息
-            Map<Integer, List<Integer>> positions = PositionParser.parsePositions(positionsString);
+        // 排序完成后再批量装配结果
+        long stageStart = System.nanoTime();
+        List<SearchResult> results = hydrationService.hydrate(topDocs, withContent);
+        endStage(SearchMetrics.Stage.HYDRATE, stageStart);
+        searchMetrics.recordResults(results.size());
 
-            // 计算该词的文档频率
-            int documentFrequency = positions.size();
+        logger.info("查询 '{}' 返回 {} 个结果", query, results.size());
+        return results;
+    }
 
-            // 计算每个文档中该词的词频
-            for (Map.Entry<Integer, List<Integer>> entry : positions.entrySet()) {
-                int docId = entry.getKey();
-                List<Integer> termPositions = entry.getValue();
-                int termFrequency = termPositions.size();
+    /**
+     * 解析查询：引号内为短语，支持 +/- 前缀与 AND/OR/NOT。
+     * 同时增加每个查询词的计数，只累加本地计数器，由后台批量写入Redis
+     */
+    private ParsedQuery parse(String query) {
+        long stageStart = System.nanoTime();
+        ParsedQuery parsedQuery = QueryParser.parse(query, textAnalyzer, "AND".equalsIgnoreCase(defaultOperator));
+        endStage(SearchMetrics.Stage.PARSE, stageStart);
+        termCountService.record(parsedQuery.getTerms());
+        return parsedQuery;
+    }
 
-                // 计算该文档对该词的得分
-                double score = bm25Service.score(term, docId, termFrequency, documentFrequency);
+    /**
+     * 求值并排序，返回排在 after 之后的前 topK 个文档。
+     * 分页查询的得分必须在各页之间一致，因此不使用可能提前停止的影响值求值
+     */
+    private ScoreDoc[] rank(String query, ParsedQuery parsedQuery, int topK, SearchAfter after, boolean paged) {
+        long stageStart = System.nanoTime();
+        if (parsedQuery.isEmpty()) {
+            return new ScoreDoc[0];
+        }
+        List<String> terms = parsedQuery.getTerms();
+
+        logger.info("搜索查询: '{}', 分词为: {}, 短语数: {}", query, terms, parsedQuery.getPhrases().size());
+
+        TopKCollector collector = new TopKCollector(topK, after);
+        if (!paged && useImpacts(parsedQuery)) {
+            // 没有短语和必须出现的词时按预先量化的影响值求值
+            stageStart = evaluateImpacts(terms, collector, stageStart);
+        } else {
+            // 获取包含查询词与排除词的倒排表：本地索引段或数据库(热门词直接命中缓存)
+            List<String> fetchTerms = new ArrayList<>(terms);
+            fetchTerms.addAll(parsedQuery.getExcludedTerms());
+            Map<String, ByteBuffer> postingsByTerm = postingsSource().getPostings(fetchTerms);
+            stageStart = endStage(SearchMetrics.Stage.POSTINGS, stageStart);
+
+            // 为每个查询词构建评分器，共用同一个语料统计快照
+            CorpusStats.Snapshot stats = bm25Service.stats();
+            Map<String, TermScorer> scorersByTerm = new LinkedHashMap<>();
+            long postingsBytes = 0;
+            long postingsDocs = 0;
+            for (String term : terms) {
+                ByteBuffer postings = postingsByTerm.get(term);
+                if (postings != null) {
+                    TermScorer scorer = new TermScorer(term, postings, bm25Service, stats);
+                    scorersByTerm.put(term, scorer);
+                    postingsBytes += postings.remaining();
+                    postingsDocs += scorer.cost();
+                }
+            }
+            searchMetrics.recordPostings(terms.size(), postingsBytes, postingsDocs);
+            stageStart = endStage(SearchMetrics.Stage.SCORERS, stageStart);
 
-                // 累加到文档总得分
-                documentScores.put(docId, documentScores.getOrDefault(docId, 0.0) + score);
+            // 必须出现的词不在词典中时不可能有结果
+            if (!scorersByTerm.keySet().containsAll(parsedQuery.getRequiredTerms())) {
+                logger.info("查询 '{}' 中必须出现的词未收录，返回 0 个结果", query);
+                return new ScoreDoc[0];
             }
-        }
 
-        // 创建搜索结果列表
-        List<SearchResult> results = new ArrayList<>();
-        for (Map.Entry<Integer, Double> entry : documentScores.entrySet()) {
-            int docId = entry.getKey();
-            double score = entry.getValue();
-            String content = searchMapper.getPageContent(docId);
+            List<TermScorer> required = new ArrayList<>();
+            List<TermScorer> optional = new ArrayList<>();
+            for (TermScorer scorer : scorersByTerm.values()) {
+                if (parsedQuery.getRequiredTerms().contains(scorer.getTerm())) {
+                    required.add(scorer);
+                } else {
+                    optional.add(scorer);
+                }
+            }
 
-            results.add(new SearchResult(docId, content, score));
-        }
+            // 多个词或存在短语时计算短语匹配与邻近度
+            TermScorer[] allScorers = scorersByTerm.values().toArray(new TermScorer[0]);
+            ProximityScorer proximity = allScorers.length >= 2 || !parsedQuery.getPhrases().isEmpty()
+                    ? new ProximityScorer(allScorers, parsedQuery.getPhrases())
+                    : null;
 
-        // 按得分排序
-        Collections.sort(results);
+            // 排除子句展开为位图，并入已删除的文档
+            BitSet excluded = liveDocs.withDeleted(
+                    ExclusionFilter.build(parsedQuery.getExcludedClauses(), parsedQuery.getExcludedPhrases(),
+                            postingsByTerm));
 
-        // 限制返回结果数量
-        if (results.size() > topK) {
-            results = results.subList(0, topK);
+            // 逐文档求值，只保留前K个
+            MaxScoreEvaluator.evaluate(required.toArray(new TermScorer[0]), optional.toArray(new TermScorer[0]),
+                    proximity, excluded, collector);
         }
+        endStage(SearchMetrics.Stage.EVALUATE, stageStart);
+        return collector.topDocs();
+    }
 
-        logger.info("查询 '{}' 返回 {} 个结果", query, results.size());
-        return results;
+    private boolean useImpacts(ParsedQuery parsedQuery) {
+        return parsedQuery.getPhrases().isEmpty() && parsedQuery.getRequiredTerms().isEmpty()
+                && !parsedQuery.hasExclusions() && segmentStore.isImpactReady();
     }
 
-    private void incrementTermCounts(List<String> terms) {
-        try {
-            for (String term : terms) {
-                redisTemplate.opsForHash().increment(SEARCH_TERMS_KEY, term, 1);
-                logger.debug("增加查询词计数: {}", term);
+    /**
+     * 按影响值逐级求值：不解码位置，也不计算邻近度，返回下一阶段的开始时间
+     */
+    private long evaluateImpacts(List<String> terms, TopKCollector collector, long stageStart) {
+        Map<String, List<ImpactCursor>> impactsByTerm = segmentStore.getImpacts(terms);
+        stageStart = endStage(SearchMetrics.Stage.POSTINGS, stageStart);
+
+        // IDF 取全局统计，同一个文档出现在词的多个段中时只计一次文档频率
+        CorpusStats.Snapshot stats = bm25Service.stats();
+        Map<String, Integer> documentFrequencies = segmentStore.documentFrequencies(impactsByTerm.keySet());
+        List<ImpactCursor> cursors = new ArrayList<>();
+        List<Double> idfs = new ArrayList<>();
+        List<Integer> termIds = new ArrayList<>();
+        long postingsDocs = 0;
+        for (Map.Entry<String, List<ImpactCursor>> entry : impactsByTerm.entrySet()) {
+            int documentFrequency = documentFrequencies.getOrDefault(entry.getKey(), 0);
+            double idf = bm25Service.idf(documentFrequency, stats.docCount());
+            int termId = termIds.isEmpty() ? 0 : termIds.get(termIds.size() - 1) + 1;
+            for (ImpactCursor cursor : entry.getValue()) {
+                cursors.add(cursor);
+                idfs.add(idf);
+                termIds.add(termId);
             }
-        } catch (Exception e) {
-            logger.error("Redis增加查询词计数失败: {}", e.getMessage(), e);
+            postingsDocs += documentFrequency;
+        }
+        double[] idfArray = new double[idfs.size()];
+        int[] termArray = new int[termIds.size()];
+        for (int i = 0; i < idfArray.length; i++) {
+            idfArray[i] = idfs.get(i);
+            termArray[i] = termIds.get(i);
         }
+        searchMetrics.recordPostings(terms.size(), 0, postingsDocs);
+        stageStart = endStage(SearchMetrics.Stage.SCORERS, stageStart);
+
+        ImpactEvaluator.evaluate(cursors.toArray(new ImpactCursor[0]), idfArray, termArray,
+                liveDocs.withDeleted(null), collector);
+        return stageStart;
+    }
+
+    /**
+     * 记录一个阶段的耗时，返回下一阶段的开始时间
+     */
+    private long endStage(SearchMetrics.Stage stage, long stageStart) {
+        long now = System.nanoTime();
+        searchMetrics.recordStage(stage, now - stageStart);
+        return now;
+    }
+
+    /**
+     * search.backend=segment 且本地索引段已就绪时从段读取，否则从数据库读取
+     */
+    private PostingsSource postingsSource() {
+        return segmentStore.isReady() ? segmentStore : postingsService;
     }
 
     public long getTermSearchCount(String term) {
@@ -140,13 +363,16 @@ public class SearchService {
         }
     }
 
+    /**
+     * 从热门词有序集合读取前 n 个，不遍历全部计数
+     */
     public List<Map.Entry<String, Long>> getTopSearchTerms(int n) {
-        Map<String, Long> allCounts = getAllTermSearchCounts();
-
-        List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(allCounts.entrySet());
-        sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
-
-        return sortedEntries.size() <= n ? sortedEntries : sortedEntries.subList(0, n);
+        try {
+            return termCountService.getTopTerms(n);
+        } catch (Exception e) {
+            logger.error("获取热门查询词失败: {}", e.getMessage(), e);
+            return Collections.emptyList();
+        }
     }
 
     public Map<String, Object> getSearchStats() {
@@ -155,17 +381,25 @@ public class SearchService {
         stats.put("averageDocumentLength", bm25Service.getAverageDocumentLength());
         // 添加热门查询词统计
         stats.put("topSearchTerms", getTopSearchTerms(10));
+        stats.put("termCounts", termCountService.getStats());
+        // 查询缓存与倒排表缓存统计
+        stats.put("queryCache", queryCacheService.getStats());
+        stats.put("postingsCache", postingsService.getStats());
+        stats.put("segments", segmentStore.getStats());
+        stats.put("suggest", suggestService.getStats());
         return stats;
     }
 
     public void refreshStats() {
         bm25Service.clearCache();
+        queryCacheService.invalidateAll();
+        postingsService.invalidateAll();
         logger.info("已刷新搜索统计信息缓存");
     }
 
     public void resetTermCount(String term) {
         try {
-            redisTemplate.opsForHash().delete(SEARCH_TERMS_KEY, term);
+            termCountService.reset(term);
             logger.info("已重置查询词 '{}' 的计数", term);
         } catch (Exception e) {
             logger.error("重置查询词计数失败: {}", e.getMessage(), e);
@@ -174,7 +408,7 @@ public class SearchService {
 
     public void resetAllTermCounts() {
         try {
-            redisTemplate.delete(SEARCH_TERMS_KEY);
+            termCountService.resetAll();
             logger.info("已重置所有查询词计数");
         } catch (Exception e) {
             logger.error("重置所有查询词计数失败: {}", e.getMessage(), e);
@@ -0,0 +1,675 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.entity.PageNorm;
+import org.example.searchenginedemo.index.ImpactCursor;
+import org.example.searchenginedemo.index.ImpactModel;
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.index.PostingsSource;
+import org.example.searchenginedemo.index.PostingsWriter;
+import org.example.searchenginedemo.index.SegmentReader;
+import org.example.searchenginedemo.index.SegmentWriter;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.util.PageTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于本地不可变索引段的倒排表后端(search.backend=segment)。
+ * <p>
+ * 首次启动时从 word_dict 与各分表的文档长度构建初始段；之后索引服务每次成功写入数据库后，
+ * 将同一批倒排尾部写成一个小段；后台任务把小段合并，控制段的数量。
+ * 查询只读取映射文件，不访问网络。MySQL 仍是唯一的数据源，删除段目录即可从数据库重建。
+ * search.impact.enabled=true 时每个段在写出与合并时另外生成按影响值排序的倒排表，
+ * k1、b 与平均文档长度取建段时的值。
+ * <p>
+ * 只读副本(search.role=replica)总是使用本地段，且不从数据库构建：
+ * 段全部由 {@link ReplicaIndexService} 消费 Kafka 写出，删除段目录后从 Kafka 重放。
+ * 页面重新索引后，旧段中该页面的倒排项被新段取代：写出新段时把页面记入所有旧段的删除位图
+ * (段目录中的 deletes.bin)，查询时跳过，合并时丢弃。
+ */
+@Service
+public class SegmentStore implements PostingsSource {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+
+    @Autowired
+    private DictMapper dictMapper;
+
+    @Autowired
+    private PagesMapper pagesMapper;
+
+    @Autowired
+    private NormsService normsService;
+
+    @Autowired
+    private BM25Service bm25Service;
+
+    @Value("${search.backend:mysql}")
+    private String backend;
+
+    @Value("${search.segment.dir:segments}")
+    private String segmentDir;
+
+    @Value("${search.impact.enabled:false}")
+    private boolean impactEnabled;
+
+    @Value("${search.role:primary}")
+    private String role;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    // 段中已被取代的文档: [wordCount:int][word:long * wordCount]
+    private static final String DELETES_FILE = "deletes.bin";
+    // 段数量超过该值时触发合并
+    private static final int MAX_SEGMENTS = 8;
+    // 超过该大小的段不再参与合并，构建初始段时也按该大小滚动
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    // 后台合并检查间隔(毫秒)
+    private static final long MERGE_INTERVAL_MS = 30_000;
+    // 构建初始段时每批读取的词条数
+    private static final int BOOTSTRAP_BATCH_SIZE = 1000;
+    private static final int NORMS_BATCH_SIZE = 10_000;
+    // 倒排表头部最长字节数：版本号与四个 vint
+    private static final int HEAD_BYTES = 21;
+
+    private Path dir;
+    // 按生成顺序排列的段，整体替换，查询时读取快照
+    private volatile List<Segment> segments = List.of();
+    private volatile boolean ready = false;
+    private final AtomicLong nextGeneration = new AtomicLong();
+    // 出现在任意段中的文档，只有其中的文档在重新索引时需要从旧段删除
+    private final BitSet indexedDocs = new BitSet();
+    // 随下一个段写出的文档长度
+    private final Map<Integer, Integer> pendingNorms = new HashMap<>();
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!isSegmentBackend()) {
+            return;
+        }
+        dir = Paths.get(segmentDir).toAbsolutePath();
+        Files.createDirectories(dir);
+
+        List<Segment> loaded = new ArrayList<>();
+        try (var entries = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) entries::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(SEGMENT_PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(".tmp")) {
+                    // 上次进程退出时未完成的段
+                    deleteSegmentDir(path);
+                    continue;
+                }
+                long generation = Long.parseLong(name.substring(SEGMENT_PREFIX.length()));
+                loaded.add(openSegment(generation, path, readDeletes(path)));
+            }
+        }
+        loaded.sort(Comparator.comparingLong(Segment::generation));
+        for (Segment segment : loaded) {
+            nextGeneration.set(Math.max(nextGeneration.get(), segment.generation() + 1));
+        }
+        segments = List.copyOf(loaded);
+
+        if (loaded.isEmpty() && isReplica()) {
+            ready = true;
+            logger.info("只读副本没有本地索引段，等待从 Kafka 重放");
+        } else if (loaded.isEmpty()) {
+            scheduler.execute(this::bootstrap);
+        } else {
+            ready = true;
+            logger.info("已加载 {} 个本地索引段", loaded.size());
+        }
+        scheduler.scheduleWithFixedDelay(this::maybeMerge, MERGE_INTERVAL_MS, MERGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isSegmentBackend() {
+        return isReplica() || "segment".equalsIgnoreCase(backend);
+    }
+
+    public boolean isReplica() {
+        return "replica".equalsIgnoreCase(role);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * 段已可用于查询；初始段构建完成前查询仍走数据库
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 启用了影响值、所有段都包含影响值且没有段含已取代的文档时，查询可以按影响值求值；
+     * 影响值倒排表按影响值排序，无法跳过已取代的文档，合并移除它们之前按倒排表求值
+     */
+    public boolean isImpactReady() {
+        if (!ready || !impactEnabled) {
+            return false;
+        }
+        for (Segment segment : segments) {
+            if (segment.reader().impactModel() == null || !segment.deletes().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 各词在各段中按影响值排序的倒排表，同一个词在多个段中时返回多个游标，
+     * 同一个文档可能出现在其中多个游标中，求值时按词去重
+     */
+    public Map<String, List<ImpactCursor>> getImpacts(Collection<String> terms) {
+        List<Segment> snapshot = segments;
+        Map<String, List<ImpactCursor>> result = new HashMap<>();
+        for (String term : terms) {
+            for (Segment segment : snapshot) {
+                SegmentReader reader = segment.reader();
+                int ord = reader.ord(term);
+                if (ord >= 0 && reader.impactModel() != null) {
+                    result.computeIfAbsent(term, k -> new ArrayList<>())
+                            .add(new ImpactCursor().reset(reader.impacts(ord), 0, reader.impactModel()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 各词的文档频率，同一个文档出现在多个段中时只计一次；只在一个段中的词直接读取倒排表头部
+     */
+    public Map<String, Integer> documentFrequencies(Collection<String> terms) {
+        List<Segment> snapshot = segments;
+        Map<String, Integer> result = new HashMap<>();
+        PostingsCursor cursor = new PostingsCursor();
+        List<Segment> found = new ArrayList<>(snapshot.size());
+        for (String term : terms) {
+            found.clear();
+            for (Segment segment : snapshot) {
+                if (segment.reader().ord(term) >= 0) {
+                    found.add(segment);
+                }
+            }
+            if (found.size() == 1 && found.get(0).deletes().isEmpty()) {
+                SegmentReader reader = found.get(0).reader();
+                result.put(term, cursor.reset(reader.postings(reader.ord(term)), 0).docCount());
+            } else if (!found.isEmpty()) {
+                BitSet docs = new BitSet();
+                for (Segment segment : found) {
+                    cursor.reset(segment.reader().postings(segment.reader().ord(term)), 0);
+                    for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                        if (!segment.deletes().get(doc)) {
+                            docs.set(doc);
+                        }
+                    }
+                }
+                result.put(term, docs.cardinality());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, ByteBuffer> getPostings(Collection<String> terms) {
+        List<Segment> snapshot = segments;
+        Map<String, ByteBuffer> result = new HashMap<>();
+        List<ByteBuffer> parts = new ArrayList<>(snapshot.size());
+        List<BitSet> partDeletes = new ArrayList<>(snapshot.size());
+        for (String term : terms) {
+            parts.clear();
+            partDeletes.clear();
+            boolean hasDeletes = false;
+            for (Segment segment : snapshot) {
+                int ord = segment.reader().ord(term);
+                if (ord >= 0) {
+                    parts.add(segment.reader().postings(ord));
+                    partDeletes.add(segment.deletes());
+                    hasDeletes |= !segment.deletes().isEmpty();
+                }
+            }
+            if (parts.size() == 1 && !hasDeletes) {
+                result.put(term, parts.get(0));
+            } else if (!parts.isEmpty()) {
+                // 词分布在多个段中或含已取代的文档时在查询时合并，后台合并会逐渐减少这种情况
+                PostingsWriter writer = new PostingsWriter();
+                PostingsCursor cursor = new PostingsCursor();
+                for (int i = 0; i < parts.size(); i++) {
+                    writer.addAll(cursor.reset(parts.get(i), 0), partDeletes.get(i));
+                }
+                if (!writer.isEmpty()) {
+                    result.put(term, ByteBuffer.wrap(writer.toByteArray()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录随下一个段写出的文档长度，长度未知(不大于 0)时忽略，避免写入段后覆盖已知的长度
+     */
+    public void addNorm(int docId, int length) {
+        if (!isSegmentBackend() || length <= 0) {
+            return;
+        }
+        synchronized (pendingNorms) {
+            pendingNorms.put(docId, length);
+        }
+    }
+
+    /**
+     * 将索引服务已写入数据库的一批倒排尾部(",page:pos" 文本格式)写成一个新段，返回是否写入成功
+     */
+    public boolean flush(Map<String, String> tails) {
+        return flush(tails, null);
+    }
+
+    /**
+     * 同上，superseded 中的文档被本批重新索引，它们在已有各段中的倒排项一并作废
+     *
+     * @param superseded 可以为 null
+     */
+    public boolean flush(Map<String, String> tails, BitSet superseded) {
+        if (!isSegmentBackend() || tails.isEmpty()) {
+            return true;
+        }
+        // 词典查询时使用小写，大小写不同的词合并到一起
+        Map<String, PostingsWriter> writers = new HashMap<>();
+        for (Map.Entry<String, String> entry : tails.entrySet()) {
+            writers.computeIfAbsent(entry.getKey().toLowerCase(), k -> new PostingsWriter()).addLegacy(entry.getValue());
+        }
+        Map<Integer, Integer> norms;
+        synchronized (pendingNorms) {
+            norms = new HashMap<>(pendingNorms);
+            pendingNorms.clear();
+        }
+
+        // 只有已在某个段中的文档才需要作废旧的倒排项，须在打开新段之前计算
+        BitSet replaced = new BitSet();
+        if (superseded != null) {
+            replaced.or(superseded);
+            synchronized (indexedDocs) {
+                replaced.and(indexedDocs);
+            }
+        }
+
+        long generation = nextGeneration.getAndIncrement();
+        Path target = segmentPath(generation);
+        try (SegmentWriter writer = newWriter(target)) {
+            for (Map.Entry<String, PostingsWriter> entry : writers.entrySet()) {
+                writer.addTerm(entry.getKey(), entry.getValue().toByteArray());
+            }
+            norms.forEach(writer::addNorm);
+            writer.commit();
+            addSegment(openSegment(generation, target, new BitSet()), replaced);
+            return true;
+        } catch (IOException e) {
+            // 数据已写入数据库，删除段目录后重启即可从数据库重建；副本重试时重新写出这一批
+            logger.error("写入本地索引段 {} 失败", target, e);
+            if (Files.exists(target)) {
+                deleteSegmentDir(target);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 遍历各段中的词与其在该段中的文档数，同一个词在多个段中时出现多次
+     */
+    public void forEachTerm(BiConsumer<String, Integer> consumer) {
+        for (Segment segment : segments) {
+            SegmentReader reader = segment.reader();
+            for (int ord = 0; ord < reader.termCount(); ord++) {
+                ByteBuffer postings = reader.postings(ord);
+                byte[] head = new byte[Math.min(HEAD_BYTES, postings.remaining())];
+                postings.get(0, head);
+                consumer.accept(reader.term(ord), PostingsCodec.readDocCount(head));
+            }
+        }
+    }
+
+    /**
+     * 数据库中的索引被整体替换后(如全量重建)从数据库重新构建所有段，完成前查询改走数据库
+     */
+    public void rebuildFromDatabase() {
+        if (!isSegmentBackend() || isReplica()) {
+            return;
+        }
+        ready = false;
+        scheduler.execute(this::bootstrap);
+    }
+
+    /**
+     * 从数据库构建初始段：按词名分页读取全部词条，超过大小上限时滚动到新段
+     */
+    private void bootstrap() {
+        long start = System.currentTimeMillis();
+        List<Segment> built = new ArrayList<>();
+        SegmentWriter writer = null;
+        long startGeneration = nextGeneration.get();
+        try {
+            long generation = nextGeneration.getAndIncrement();
+            writer = newWriter(segmentPath(generation));
+            writeNorms(writer);
+
+            String afterName = "";
+            List<Map<String, Object>> batch;
+            do {
+                batch = dictMapper.selectPostingsPage(afterName, BOOTSTRAP_BATCH_SIZE);
+                Map<String, PostingsWriter> duplicates = new HashMap<>();
+                for (Map<String, Object> row : batch) {
+                    afterName = (String) row.get("name");
+                    byte[] postings = PostingsCodec.merge((byte[]) row.get("postings"), (String) row.get("positions"));
+                    String term = afterName.toLowerCase();
+                    PostingsWriter merged = duplicates.computeIfAbsent(term, k -> new PostingsWriter());
+                    merged.addAll(new PostingsCursor().reset(postings));
+                }
+                for (Map.Entry<String, PostingsWriter> entry : duplicates.entrySet()) {
+                    byte[] postings = entry.getValue().toByteArray();
+                    if (writer.postingsBytes() + postings.length > MAX_SEGMENT_BYTES) {
+                        writer.commit();
+                        built.add(openSegment(generation, segmentPath(generation), new BitSet()));
+                        generation = nextGeneration.getAndIncrement();
+                        writer = newWriter(segmentPath(generation));
+                    }
+                    writer.addTerm(entry.getKey(), postings);
+                }
+            } while (batch.size() == BOOTSTRAP_BATCH_SIZE);
+            writer.commit();
+            built.add(openSegment(generation, segmentPath(generation), new BitSet()));
+
+            // 构建期间由索引服务写出的段保留，构建开始前的旧段被新段取代
+            List<Segment> replaced = new ArrayList<>();
+            synchronized (this) {
+                List<Segment> updated = new ArrayList<>(built);
+                for (Segment segment : segments) {
+                    if (segment.generation() >= startGeneration) {
+                        updated.add(segment);
+                    } else {
+                        replaced.add(segment);
+                    }
+                }
+                updated.sort(Comparator.comparingLong(Segment::generation));
+                segments = List.copyOf(updated);
+            }
+            for (Segment segment : replaced) {
+                deleteSegmentDir(segment.reader().getDir());
+            }
+            ready = true;
+            logger.info("已从数据库构建 {} 个本地索引段，耗时 {} ms", built.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("构建本地索引段失败，查询继续使用数据库", e);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private void writeNorms(SegmentWriter writer) {
+        for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+            String table = PageTables.tableName(shard);
+            int afterId = 0;
+            List<PageNorm> batch;
+            do {
+                batch = pagesMapper.selectPageNorms(table, afterId, NORMS_BATCH_SIZE);
+                for (PageNorm norm : batch) {
+                    writer.addNorm(norm.getId(), norm.getWordCount());
+                    afterId = norm.getId();
+                }
+            } while (batch.size() == NORMS_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * 段数量过多时合并最小的若干个段，否则重写含已取代文档的段
+     */
+    private void maybeMerge() {
+        try {
+            List<Segment> merging = selectMerge(segments);
+            if (merging.isEmpty()) {
+                return;
+            }
+            // 按生成顺序合并，使较新的文档长度覆盖较旧的
+            merging.sort(Comparator.comparingLong(Segment::generation));
+            List<SegmentReader> readers = new ArrayList<>(merging.size());
+            List<BitSet> deletes = new ArrayList<>(merging.size());
+            Map<Long, BitSet> mergedDeletes = new HashMap<>();
+            for (Segment segment : merging) {
+                readers.add(segment.reader());
+                deletes.add(segment.deletes());
+                mergedDeletes.put(segment.generation(), segment.deletes());
+            }
+
+            long start = System.currentTimeMillis();
+            long generation = nextGeneration.getAndIncrement();
+            Path target = segmentPath(generation);
+            SegmentWriter.merge(readers, deletes, target, impactModel(), normsService::length);
+            SegmentReader mergedReader = SegmentReader.open(target);
+            BitSet mergedDocs = new BitSet();
+            mergedReader.forEachNorm((docId, length) -> mergedDocs.set(docId));
+
+            synchronized (this) {
+                // 合并期间被取代的文档仍在新段中，转记到新段的删除位图
+                BitSet carried = new BitSet();
+                List<Segment> updated = new ArrayList<>();
+                for (Segment segment : segments) {
+                    BitSet applied = mergedDeletes.get(segment.generation());
+                    if (applied == null) {
+                        updated.add(segment);
+                        continue;
+                    }
+                    BitSet added = (BitSet) segment.deletes().clone();
+                    added.andNot(applied);
+                    carried.or(added);
+                }
+                if (!carried.isEmpty()) {
+                    writeDeletes(target, carried);
+                }
+                updated.add(new Segment(generation, mergedReader, mergedDocs, carried));
+                updated.sort(Comparator.comparingLong(Segment::generation));
+                segments = List.copyOf(updated);
+            }
+            // 进行中的查询仍持有旧段的映射，删除文件不影响已映射的区域
+            for (Segment segment : merging) {
+                deleteSegmentDir(segment.reader().getDir());
+            }
+            logger.info("合并 {} 个本地索引段为 {}，耗时 {} ms",
+                    merging.size(), segmentPath(generation).getFileName(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("合并本地索引段失败", e);
+        }
+    }
+
+    /**
+     * 段数量过多时选出最小的若干个段；否则选出已取代文档最多的一个段单独重写，
+     * 超过大小上限的段也会被重写，否则其中的旧倒排项永远不会移除
+     */
+    private List<Segment> selectMerge(List<Segment> snapshot) {
+        if (snapshot.size() > MAX_SEGMENTS) {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : snapshot) {
+                if (segment.reader().postingsBytes() < MAX_SEGMENT_BYTES) {
+                    candidates.add(segment);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(s -> s.reader().postingsBytes()));
+            int count = Math.min(candidates.size(), snapshot.size() - MAX_SEGMENTS + 1);
+            if (count >= 2) {
+                return new ArrayList<>(candidates.subList(0, count));
+            }
+        }
+        Segment mostDeletes = null;
+        for (Segment segment : snapshot) {
+            int deleted = segment.deletes().cardinality();
+            if (deleted > 0 && (mostDeletes == null || deleted > mostDeletes.deletes().cardinality())) {
+                mostDeletes = segment;
+            }
+        }
+        return mostDeletes == null ? List.of() : new ArrayList<>(List.of(mostDeletes));
+    }
+
+    private SegmentWriter newWriter(Path target) throws IOException {
+        SegmentWriter writer = new SegmentWriter(target);
+        ImpactModel model = impactModel();
+        if (model != null) {
+            writer.enableImpacts(model, normsService::length);
+        }
+        return writer;
+    }
+
+    /**
+     * 以当前的语料统计固定本次建段的影响值模型，未启用时返回 null
+     */
+    private ImpactModel impactModel() {
+        if (!impactEnabled) {
+            return null;
+        }
+        return new ImpactModel(bm25Service.getK1(), bm25Service.getB(), bm25Service.getAverageDocumentLength());
+    }
+
+    /**
+     * 加入新段，并把 replaced 中的文档记入已有各段的删除位图；删除位图先写入文件再发布
+     */
+    private synchronized void addSegment(Segment segment, BitSet replaced) throws IOException {
+        List<Segment> updated = new ArrayList<>(segments.size() + 1);
+        for (Segment existing : segments) {
+            if (replaced.intersects(existing.docs())) {
+                BitSet deletes = (BitSet) existing.deletes().clone();
+                deletes.or(replaced);
+                deletes.and(existing.docs());
+                writeDeletes(existing.reader().getDir(), deletes);
+                existing = new Segment(existing.generation(), existing.reader(), existing.docs(), deletes);
+            }
+            updated.add(existing);
+        }
+        updated.add(segment);
+        segments = List.copyOf(updated);
+    }
+
+    /**
+     * 打开段，并将其中的文档长度写入内存副本，评分时无需访问数据库
+     */
+    private Segment openSegment(long generation, Path path, BitSet deletes) throws IOException {
+        SegmentReader reader = SegmentReader.open(path);
+        BitSet docs = new BitSet();
+        reader.forEachNorm((docId, length) -> {
+            // 早先写出的段可能含有未知的长度 0
+            if (length > 0) {
+                normsService.put(docId, length);
+            }
+            docs.set(docId);
+        });
+        synchronized (indexedDocs) {
+            indexedDocs.or(docs);
+        }
+        return new Segment(generation, reader, docs, deletes);
+    }
+
+    private static BitSet readDeletes(Path segment) throws IOException {
+        Path file = segment.resolve(DELETES_FILE);
+        if (!Files.exists(file)) {
+            return new BitSet();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * 先写临时文件再改名，崩溃时保留旧的删除位图；重放的消息会重新记入
+     */
+    private static void writeDeletes(Path segment, BitSet deletes) throws IOException {
+        Path file = segment.resolve(DELETES_FILE);
+        Path tmp = segment.resolve(DELETES_FILE + ".tmp");
+        long[] words = deletes.toLongArray();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long generation) {
+        return dir.resolve(String.format("%s%08d", SEGMENT_PREFIX, generation));
+    }
+
+    private void deleteSegmentDir(Path path) {
+        try (var files = Files.list(path)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除索引段目录 {} 失败", path, e);
+        }
+    }
+
+    private void closeQuietly(SegmentWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("清理未完成的索引段失败", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        List<Segment> snapshot = segments;
+        long terms = 0;
+        long bytes = 0;
+        long deletedDocs = 0;
+        for (Segment segment : snapshot) {
+            terms += segment.reader().termCount();
+            bytes += segment.reader().postingsBytes();
+            deletedDocs += segment.deletes().cardinality();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ready", ready);
+        stats.put("segmentCount", snapshot.size());
+        stats.put("termEntries", terms);
+        stats.put("postingsBytes", bytes);
+        stats.put("supersededDocs", deletedDocs);
+        stats.put("impactReady", isImpactReady());
+        return stats;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * @param docs    段中包含的文档(有文档长度的文档)
+     * @param deletes 段中已被取代的文档，发布后不再修改
+     */
+    private record Segment(long generation, SegmentReader reader, BitSet docs, BitSet deletes) {
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.util.PageTables;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+
+/**
+ * 页面分表的路由与并行访问。
+ * docId 到分表的映射在加载文档长度时记录(页面id在各分表间全局唯一)；
+ * 未知归属的文档会在所有分表中查找。
+ */
+@Service
+public class ShardService {
+
+    private final ExecutorService shardPool = Executors.newFixedThreadPool(PageTables.SHARD_COUNT);
+
+    // 下标为docId，值为分表序号+1，0表示未知
+    private volatile byte[] shards = new byte[0];
+
+    public synchronized void assign(int docId, int shard) {
+        byte[] current = shards;
+        if (docId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(docId + 1, current.length + (current.length >> 1)));
+            current[docId] = (byte) (shard + 1);
+            shards = current;
+        } else {
+            current[docId] = (byte) (shard + 1);
+        }
+    }
+
+    /**
+     * 返回文档所在的分表序号，未知时返回 -1
+     */
+    public int shardOf(int docId) {
+        byte[] current = shards;
+        return docId < current.length ? current[docId] - 1 : -1;
+    }
+
+    /**
+     * 按分表分组，未知归属的文档放入每个分表
+     */
+    public Map<Integer, List<Integer>> groupByShard(Collection<Integer> docIds) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        List<Integer> unknown = new ArrayList<>();
+        for (Integer docId : docIds) {
+            int shard = shardOf(docId);
+            if (shard >= 0) {
+                groups.computeIfAbsent(shard, k -> new ArrayList<>()).add(docId);
+            } else {
+                unknown.add(docId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+                groups.computeIfAbsent(shard, k -> new ArrayList<>()).addAll(unknown);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 在所有分表上并行执行任务，按分表顺序返回结果
+     */
+    public <T> List<T> fanOut(IntFunction<T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(PageTables.SHARD_COUNT);
+        for (int shard = 0; shard < PageTables.SHARD_COUNT; shard++) {
+            final int s = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(s), shardPool));
+        }
+        return joinAll(futures);
+    }
+
+    /**
+     * 只在分组涉及的分表上并行执行任务
+     */
+    public <T> List<T> fanOut(Map<Integer, List<Integer>> groups, BiFunction<Integer, List<Integer>, T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(groups.size());
+        for (Map.Entry<Integer, List<Integer>> entry : groups.entrySet()) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(entry.getKey(), entry.getValue()), shardPool));
+        }
+        return joinAll(futures);
+    }
+
+    private static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        shardPool.shutdown();
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.SuggestDictionary;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输入即搜索的前缀补全。
+ * 后台定时从 word_dict 读取全部词名与文档数，结合 Redis 中的热门查询词计数编译为 {@link SuggestDictionary}，
+ * 构建完成后整体替换；查询只访问内存中的词典，不访问数据库。
+ * 只读副本不访问 word_dict，从本地索引段读取词与文档数。
+ */
+@Service
+public class SuggestService {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestService.class);
+
+    @Autowired
+    private DictMapper dictMapper;
+
+    @Autowired
+    private TermCountService termCountService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    // 重建间隔(毫秒)
+    private static final long REBUILD_INTERVAL_MS = 10 * 60 * 1000;
+    // 每批读取的词条数
+    private static final int LOAD_BATCH_SIZE = 5000;
+    // 参与加权的热门查询词数量
+    private static final int QUERY_COUNT_TERMS = 10_000;
+    // 查询次数相对文档数的权重
+    private static final float QUERY_COUNT_WEIGHT = 2.0f;
+
+    private volatile SuggestDictionary dictionary = new SuggestDictionary.Builder().build();
+    private volatile long lastBuildMillis;
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::rebuild, 0, REBUILD_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 以 prefix 开头的词，按 log(1+文档数) + 2·log(1+查询次数) 降序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return dictionary.suggest(prefix.trim().toLowerCase(), limit);
+    }
+
+    /**
+     * 重建词典，失败时继续使用旧词典
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, Long> queryCounts = new HashMap<>();
+            try {
+                for (Map.Entry<String, Long> entry : termCountService.getTopTerms(QUERY_COUNT_TERMS)) {
+                    queryCounts.put(entry.getKey().toLowerCase(), entry.getValue());
+                }
+            } catch (Exception e) {
+                logger.warn("读取热门查询词失败，补全词典只按文档数加权: {}", e.getMessage());
+            }
+
+            SuggestDictionary.Builder builder = new SuggestDictionary.Builder();
+            if (segmentStore.isReplica()) {
+                // 同一个词分布在多个段中时文档数相加
+                Map<String, Integer> docCounts = new HashMap<>();
+                segmentStore.forEachTerm((term, docCount) -> docCounts.merge(term, docCount, Integer::sum));
+                docCounts.forEach((term, docCount) ->
+                        builder.add(term, weight(docCount, queryCounts.getOrDefault(term, 0L))));
+            } else {
+                String afterName = "";
+                List<Map<String, Object>> batch;
+                do {
+                    batch = dictMapper.selectTermHeads(afterName, LOAD_BATCH_SIZE);
+                    for (Map<String, Object> row : batch) {
+                        afterName = (String) row.get("name");
+                        String term = afterName.toLowerCase();
+                        int docCount = PostingsCodec.readDocCount((byte[]) row.get("head"));
+                        builder.add(term, weight(docCount, queryCounts.getOrDefault(term, 0L)));
+                    }
+                } while (batch.size() == LOAD_BATCH_SIZE);
+            }
+
+            SuggestDictionary built = builder.build();
+            dictionary = built;
+            lastBuildMillis = System.currentTimeMillis() - start;
+            logger.info("补全词典构建完成：{} 个词，约 {} KB，耗时 {} ms",
+                    built.size(), built.ramBytes() / 1024, lastBuildMillis);
+        } catch (Exception e) {
+            logger.error("构建补全词典失败，继续使用旧词典", e);
+        }
+    }
+
+    private static float weight(int docCount, long queries) {
+        return (float) (Math.log1p(docCount) + QUERY_COUNT_WEIGHT * Math.log1p(queries));
+    }
+
+    public Map<String, Object> getStats() {
+        SuggestDictionary current = dictionary;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("terms", current.size());
+        stats.put("ramBytes", current.ramBytes());
+        stats.put("lastBuildMillis", lastBuildMillis);
+        return stats;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
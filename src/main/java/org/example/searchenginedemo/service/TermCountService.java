@@ -0,0 +1,267 @@
+package org.example.searchenginedemo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询词计数。请求线程只在本地的 LongAdder 上累加，不访问 Redis；
+ * 后台任务定时把增量以流水线批量 HINCRBY 写入 search:terms:count。
+ * <p>
+ * Redis 不可用时增量保留到下一次刷新，本地待刷新的词数有上限，超过后新词的计数被丢弃并记录。
+ * 计数用于统计热门查询词，允许在并发清理空闲计数器时丢失极少量增量。
+ * <p>
+ * 热门词另存于有序集合 search:terms:top：刷新时用 HINCRBY 返回的总数 ZADD，再裁剪到前 MAX_TOP_TERMS 个。
+ * 被裁掉的词计数只会增长，下次刷新时以准确的总数重新加入，因此集合中始终是计数最高的词，
+ * 查询前 N 个只需 ZREVRANGE，与词表大小无关。
+ */
+@Service
+public class TermCountService {
+    private static final Logger logger = LoggerFactory.getLogger(TermCountService.class);
+    private static final String SEARCH_TERMS_KEY = "search:terms:count";
+    private static final String TOP_TERMS_KEY = "search:terms:top";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${search.term-counts.enabled:true}")
+    private boolean enabled;
+
+    // 刷新间隔(毫秒)
+    private static final long FLUSH_INTERVAL_MS = 5000;
+    // 本地计数器与失败重试缓冲各自的词数上限
+    private static final int MAX_PENDING_TERMS = 100_000;
+    // 每个流水线包含的 HINCRBY 数量
+    private static final int PIPELINE_BATCH_SIZE = 500;
+    // 有序集合中保留的热门词数量
+    private static final int MAX_TOP_TERMS = 10_000;
+    // 从哈希重建有序集合时每次 HSCAN 的数量
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    // 上次刷新失败、等待重试的增量，持有锁时访问
+    private final Map<String, Long> retry = new HashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    // 有序集合写入失败后需要从哈希重建，持有锁时访问
+    private boolean topTermsStale;
+    // 是否已检查过有序集合是否存在
+    private boolean topTermsChecked;
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次查询中出现的词，同一查询中重复的词只计一次
+     */
+    public void record(Collection<String> terms) {
+        if (!enabled) {
+            return;
+        }
+        for (String term : new HashSet<>(terms)) {
+            LongAdder counter = counters.get(term);
+            if (counter == null) {
+                if (counters.size() >= MAX_PENDING_TERMS) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                counter = counters.computeIfAbsent(term, k -> new LongAdder());
+            }
+            counter.increment();
+        }
+    }
+
+    /**
+     * 取出本地增量并写入 Redis，失败时保留到下一次
+     */
+    synchronized void flush() {
+        try {
+            if (!topTermsChecked) {
+                // 从旧版本升级时只有计数哈希，没有有序集合
+                topTermsStale |= !Boolean.TRUE.equals(redisTemplate.hasKey(TOP_TERMS_KEY));
+                topTermsChecked = true;
+            }
+            if (topTermsStale) {
+                rebuildTopTerms();
+            }
+            Map<String, Long> deltas = new HashMap<>(retry);
+            retry.clear();
+            for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+                long delta = entry.getValue().sumThenReset();
+                if (delta > 0) {
+                    deltas.merge(entry.getKey(), delta, Long::sum);
+                } else {
+                    // 一个刷新周期内没有增量的词移除计数器，避免 map 只增不减
+                    counters.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(deltas.entrySet());
+            for (int from = 0; from < entries.size(); from += PIPELINE_BATCH_SIZE) {
+                List<Map.Entry<String, Long>> batch = entries.subList(from, Math.min(entries.size(), from + PIPELINE_BATCH_SIZE));
+                try {
+                    writeBatch(batch);
+                    flushed.addAndGet(batch.size());
+                } catch (Exception e) {
+                    flushFailures.incrementAndGet();
+                    keepForRetry(entries.subList(from, entries.size()));
+                    logger.warn("查询词计数写入Redis失败，{} 个词的增量保留到下次刷新: {}", entries.size() - from, e.getMessage());
+                    return;
+                }
+            }
+            redisTemplate.opsForZSet().removeRange(TOP_TERMS_KEY, 0, -(MAX_TOP_TERMS + 1));
+        } catch (Exception e) {
+            logger.error("刷新查询词计数失败", e);
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<String, Long>> batch) {
+        byte[] key = SEARCH_TERMS_KEY.getBytes(StandardCharsets.UTF_8);
+        List<Object> totals = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Long> entry : batch) {
+                connection.hashCommands().hIncrBy(key, entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+            }
+            return null;
+        });
+
+        // 哈希已更新，有序集合写入失败时不能重试增量，改为稍后从哈希重建
+        try {
+            byte[] topKey = TOP_TERMS_KEY.getBytes(StandardCharsets.UTF_8);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    double total = ((Number) totals.get(i)).doubleValue();
+                    connection.zSetCommands().zAdd(topKey, total, batch.get(i).getKey().getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            topTermsStale = true;
+            logger.warn("更新热门查询词失败，将从计数哈希重建: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用 HSCAN 遍历计数哈希，在本地保留计数最高的 MAX_TOP_TERMS 个词后整体写入有序集合。
+     * 只在有序集合缺失(如首次升级)或写入失败后执行
+     */
+    private void rebuildTopTerms() {
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        ScanOptions options = ScanOptions.scanOptions().count(SCAN_BATCH_SIZE).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash().scan(SEARCH_TERMS_KEY, options)) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                top.add(Map.entry(entry.getKey().toString(), Long.parseLong(entry.getValue().toString())));
+                if (top.size() > MAX_TOP_TERMS) {
+                    top.poll();
+                }
+            }
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (Map.Entry<String, Long> entry : top) {
+            tuples.add(ZSetOperations.TypedTuple.of(entry.getKey(), entry.getValue().doubleValue()));
+        }
+        redisTemplate.delete(TOP_TERMS_KEY);
+        if (!tuples.isEmpty()) {
+            redisTemplate.opsForZSet().add(TOP_TERMS_KEY, tuples);
+        }
+        topTermsStale = false;
+        logger.info("已从计数哈希重建热门查询词，共 {} 个", tuples.size());
+    }
+
+    /**
+     * 计数最高的 n 个词，按计数降序
+     */
+    public List<Map.Entry<String, Long>> getTopTerms(int n) {
+        if (n <= 0) {
+            return Collections.emptyList();
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(TOP_TERMS_KEY, 0, Math.min(n, MAX_TOP_TERMS) - 1);
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                result.add(Map.entry(tuple.getValue(), tuple.getScore().longValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 删除一个词的计数
+     */
+    public void reset(String term) {
+        redisTemplate.opsForHash().delete(SEARCH_TERMS_KEY, term);
+        redisTemplate.opsForZSet().remove(TOP_TERMS_KEY, term);
+    }
+
+    /**
+     * 删除所有计数，包括尚未写入 Redis 的增量
+     */
+    public synchronized void resetAll() {
+        counters.clear();
+        retry.clear();
+        redisTemplate.delete(List.of(SEARCH_TERMS_KEY, TOP_TERMS_KEY));
+    }
+
+    private void keepForRetry(List<Map.Entry<String, Long>> entries) {
+        for (Map.Entry<String, Long> entry : entries) {
+            if (retry.size() >= MAX_PENDING_TERMS && !retry.containsKey(entry.getKey())) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            retry.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingTerms", counters.size());
+        stats.put("flushedTerms", flushed.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("droppedTerms", dropped.get());
+        return stats;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // 写出剩余的增量
+        flush();
+    }
+}
@@ -0,0 +1,311 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.entity.Tombstone;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.index.LiveDocs;
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.mapper.TombstoneMapper;
+import org.example.searchenginedemo.util.PageTables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 文档删除与重新索引。
+ * <p>
+ * 删除或重新索引时先写入墓碑(doc_tombstones)，查询立即通过 {@link LiveDocs} 过滤该文档；
+ * 后台压缩任务按词名遍历 word_dict，把倒排表中的墓碑文档去掉，同时折叠文本尾部并对位置排序去重。
+ * 完整遍历一遍后：删除的墓碑标记为已移除并继续保留，迟到的消息写入的倒排项仍会被过滤；
+ * 重新索引的页面放回待分词状态后删除墓碑，由分词流水线写入新的倒排项。
+ * 压缩按读取的倒排表字节数限速，避免与前台查询争抢数据库。
+ * 只读副本(search.role=replica)不压缩，只定期从数据库同步墓碑。
+ */
+@Service
+public class TombstoneService {
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneService.class);
+
+    @Autowired
+    private TombstoneMapper tombstoneMapper;
+
+    @Autowired
+    private DictMapper dictMapper;
+
+    @Autowired
+    private PagesMapper pagesMapper;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private NormsService normsService;
+
+    @Autowired
+    private PostingsService postingsService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private LiveDocs liveDocs;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    // 压缩时每秒最多读取的倒排表字节数
+    @Value("${search.compaction.bytes-per-second:4194304}")
+    private long bytesPerSecond;
+
+    @Value("${search.role:primary}")
+    private String role;
+
+    // 压缩检查间隔(毫秒)
+    private static final long COMPACTION_INTERVAL_MS = 5 * 60 * 1000;
+    // 只读副本同步墓碑的间隔(毫秒)
+    private static final long REPLICA_SYNC_INTERVAL_MS = 30_000;
+    // 每批读取的词条数
+    private static final int COMPACTION_BATCH_SIZE = 200;
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile int lastPurged;
+    private volatile long lastRewrittenTerms;
+    private volatile long lastBytesRead;
+    private volatile long lastCompactionMillis;
+
+    @PostConstruct
+    public void init() {
+        scheduler.execute(this::loadTombstones);
+        if ("replica".equalsIgnoreCase(role)) {
+            scheduler.scheduleWithFixedDelay(this::syncTombstones,
+                    REPLICA_SYNC_INTERVAL_MS, REPLICA_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(
+                this::compact,
+                COMPACTION_INTERVAL_MS,
+                COMPACTION_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * 删除页面：立即从查询结果中消失，倒排项由后台压缩移除
+     */
+    public void delete(int docId) {
+        tombstoneMapper.upsertTombstone(docId, false);
+        liveDocs.delete(docId);
+        indexGeneration.increment();
+        for (Map.Entry<Integer, List<Integer>> entry : shardService.groupByShard(List.of(docId)).entrySet()) {
+            pagesMapper.deletePage(PageTables.tableName(entry.getKey()), docId);
+        }
+        // 不再计入语料统计
+        normsService.put(docId, 0);
+        logger.info("已删除页面 {}，等待压缩移除其倒排项", docId);
+    }
+
+    /**
+     * 重新索引页面：旧的倒排项被压缩移除后，页面重新进入分词流水线，期间不出现在查询结果中
+     */
+    public void reindex(int docId) {
+        tombstoneMapper.upsertTombstone(docId, true);
+        liveDocs.delete(docId);
+        indexGeneration.increment();
+        logger.info("页面 {} 等待重新索引", docId);
+    }
+
+    /**
+     * 在后台立即开始一轮压缩，已有压缩在进行时返回 false
+     */
+    public boolean startCompaction() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::compact);
+        return true;
+    }
+
+    private void loadTombstones() {
+        try {
+            BitSet deleted = new BitSet();
+            for (Tombstone tombstone : tombstoneMapper.selectTombstones()) {
+                deleted.set(tombstone.getDocId());
+            }
+            liveDocs.deleteAll(deleted);
+            logger.info("已加载 {} 个文档墓碑", deleted.cardinality());
+        } catch (Exception e) {
+            logger.error("加载文档墓碑失败", e);
+        }
+    }
+
+    /**
+     * 副本以数据库为准替换墓碑位图，主节点重新索引完成后删除的墓碑也会随之解除
+     */
+    private void syncTombstones() {
+        try {
+            BitSet deleted = new BitSet();
+            for (Tombstone tombstone : tombstoneMapper.selectTombstones()) {
+                deleted.set(tombstone.getDocId());
+            }
+            if (!deleted.equals(liveDocs.deletedDocs())) {
+                liveDocs.reset(deleted);
+                indexGeneration.increment();
+            }
+        } catch (Exception e) {
+            logger.error("同步文档墓碑失败", e);
+        }
+    }
+
+    /**
+     * 遍历全部词条移除墓碑文档。只有完整遍历且所有改写都成功时才处理本轮的墓碑，否则下一轮重试
+     */
+    public void compact() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        String afterName = "";
+        try {
+            // 同步数据库中的墓碑，其他实例写入的墓碑也会生效
+            List<Tombstone> tombstones = tombstoneMapper.selectTombstones();
+            BitSet deleted = new BitSet();
+            List<Tombstone> pending = new ArrayList<>();
+            for (Tombstone tombstone : tombstones) {
+                deleted.set(tombstone.getDocId());
+                if (!tombstone.isPurged()) {
+                    pending.add(tombstone);
+                }
+            }
+            liveDocs.deleteAll(deleted);
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            long bytesRead = 0;
+            long rewritten = 0;
+            boolean complete = true;
+            List<Map<String, Object>> batch;
+            do {
+                batch = dictMapper.selectPostingsPage(afterName, COMPACTION_BATCH_SIZE);
+                Set<String> invalidated = new HashSet<>();
+                for (Map<String, Object> row : batch) {
+                    afterName = (String) row.get("name");
+                    byte[] postings = (byte[]) row.get("postings");
+                    String tail = (String) row.get("positions");
+                    bytesRead += (postings != null ? postings.length : 0) + (tail != null ? tail.length() : 0);
+
+                    boolean hasTail = tail != null && !tail.isEmpty();
+                    if (postings == null && !hasTail) {
+                        continue;
+                    }
+                    byte[] merged = PostingsCodec.merge(postings, tail);
+                    byte[] compacted = PostingsCodec.removeDocs(merged, deleted);
+                    if (compacted == merged && !hasTail) {
+                        continue;
+                    }
+                    // 以读取到的二进制部分为条件，期间被折叠进来的新倒排项不会被覆盖
+                    if (dictMapper.foldPostings(afterName, postings, compacted, hasTail ? tail : "") > 0) {
+                        invalidated.add(afterName.toLowerCase());
+                        rewritten++;
+                    } else {
+                        // 词条被其他进程折叠过，本轮不再确认墓碑已移除
+                        complete = false;
+                    }
+                }
+                if (!invalidated.isEmpty()) {
+                    postingsService.invalidate(invalidated);
+                }
+                throttle(bytesRead, startNanos);
+            } while (batch.size() == COMPACTION_BATCH_SIZE);
+
+            lastRewrittenTerms = rewritten;
+            lastBytesRead = bytesRead;
+            lastCompactionMillis = System.currentTimeMillis() - start;
+            if (rewritten > 0) {
+                // 文档频率已变化
+                indexGeneration.increment();
+            }
+            if (!complete) {
+                logger.warn("压缩期间有词条被并发改写，{} 个墓碑留待下一轮处理", pending.size());
+                return;
+            }
+            finish(pending);
+            logger.info("压缩完成：移除 {} 个文档，改写 {} 个词条，读取 {} KB，耗时 {} ms",
+                    pending.size(), rewritten, bytesRead / 1024, lastCompactionMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("压缩被中断，停止于词条 '{}'", afterName);
+        } catch (Exception e) {
+            logger.error("压缩倒排表失败，停止于词条 '{}'", afterName, e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 处理已从倒排表中移除的墓碑：删除的标记为已移除，重新索引的放回分词流水线
+     */
+    private void finish(List<Tombstone> purged) {
+        List<Integer> deletedIds = new ArrayList<>();
+        List<Integer> reindexIds = new ArrayList<>();
+        for (Tombstone tombstone : purged) {
+            (tombstone.isReindex() ? reindexIds : deletedIds).add(tombstone.getDocId());
+        }
+        if (!deletedIds.isEmpty()) {
+            tombstoneMapper.markPurged(deletedIds);
+        }
+        if (!reindexIds.isEmpty()) {
+            for (Map.Entry<Integer, List<Integer>> entry : shardService.groupByShard(reindexIds).entrySet()) {
+                pagesMapper.markDicUndone(PageTables.tableName(entry.getKey()), entry.getValue());
+            }
+            // 本地索引段仍包含旧的倒排项，从已压缩的数据库重建，完成前查询走数据库
+            segmentStore.rebuildFromDatabase();
+            tombstoneMapper.deleteTombstones(reindexIds);
+            liveDocs.restore(reindexIds);
+            indexGeneration.increment();
+        }
+        lastPurged = purged.size();
+    }
+
+    /**
+     * 读取速度超过限额时等待，使平均速度不超过 bytesPerSecond
+     */
+    private void throttle(long bytesRead, long startNanos) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = bytesRead * 1_000_000_000L / bytesPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("deletedDocs", liveDocs.deletedCount());
+        stats.put("bytesPerSecond", bytesPerSecond);
+        stats.put("lastPurged", lastPurged);
+        stats.put("lastRewrittenTerms", lastRewrittenTerms);
+        stats.put("lastBytesRead", lastBytesRead);
+        stats.put("lastCompactionMillis", lastCompactionMillis);
+        return stats;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
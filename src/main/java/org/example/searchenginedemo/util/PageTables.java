@@ -0,0 +1,22 @@
+package org.example.searchenginedemo.util;
+
+public class PageTables {
+
+    // 页面分表数量：pages0 ~ pagesf
+    public static final int SHARD_COUNT = 16;
+
+    private static final String[] TABLES = new String[SHARD_COUNT];
+
+    static {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            TABLES[i] = "pages" + Character.forDigit(i, SHARD_COUNT);
+        }
+    }
+
+    /**
+     * 返回第 shard 个分表的表名
+     */
+    public static String tableName(int shard) {
+        return TABLES[shard];
+    }
+}
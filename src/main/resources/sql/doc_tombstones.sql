@@ -0,0 +1,10 @@
+-- 文档墓碑：被删除或等待重新索引的文档
+-- 查询时过滤其中的文档，由 TombstoneService 在后台压缩时把它们从 word_dict 的倒排表中移除
+-- reindex: 为 1 时移除完成后重新分词索引该页面，并删除墓碑
+-- purged: 倒排表中已不含该文档
+CREATE TABLE IF NOT EXISTS doc_tombstones (
+    doc_id     INT       NOT NULL PRIMARY KEY,
+    reindex    TINYINT   NOT NULL DEFAULT 0,
+    purged     TINYINT   NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
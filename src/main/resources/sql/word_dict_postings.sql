@@ -0,0 +1,4 @@
+-- 二进制倒排表迁移
+-- postings: PostingsCodec 格式的压缩倒排表主体
+-- positions: 保留为追加写入的文本尾部，由 PostingsMigrationService 定期折叠进 postings
+ALTER TABLE word_dict ADD COLUMN postings LONGBLOB NULL AFTER positions;
@@ -0,0 +1,2 @@
+-- upsertPostings 依赖 name 上的唯一索引来合并写入
+ALTER TABLE word_dict ADD UNIQUE KEY uk_word_dict_name (name);
@@ -0,0 +1,51 @@
+package org.example.searchenginedemo.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkIndexBuilderTest {
+
+    @Test
+    void testMergeMatchesInMemoryBuild(@TempDir Path dir) throws Exception {
+        Random random = new Random(7);
+        String[] vocabulary = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        Map<String, PostingsWriter> expected = new TreeMap<>();
+
+        List<String> terms = new ArrayList<>();
+        List<byte[]> merged = new ArrayList<>();
+        // 缓冲上限很小，迫使写出多个顺串，同一个词分布在多个顺串中
+        try (BulkIndexBuilder builder = new BulkIndexBuilder(dir, 50)) {
+            for (int doc = 1; doc <= 200; doc++) {
+                Map<String, List<Integer>> page = new HashMap<>();
+                for (int pos = 0; pos < 10; pos++) {
+                    String term = vocabulary[random.nextInt(vocabulary.length)];
+                    page.computeIfAbsent(term, k -> new ArrayList<>()).add(pos);
+                    expected.computeIfAbsent(term, k -> new PostingsWriter()).add(doc, pos);
+                }
+                builder.addPage(doc, page);
+            }
+            assertTrue(builder.runCount() > 1);
+
+            builder.merge((term, postings) -> {
+                terms.add(term);
+                merged.add(postings);
+            });
+        }
+
+        assertEquals(new ArrayList<>(expected.keySet()), terms);
+        int i = 0;
+        for (PostingsWriter writer : expected.values()) {
+            assertArrayEquals(writer.toByteArray(), merged.get(i++));
+        }
+        // 关闭后顺串文件被删除
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.searchenginedemo.index;
+
+import org.example.searchenginedemo.util.PositionParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PostingsCodecTest {
+
+    @Test
+    void testLegacyRoundTrip() {
+        String legacy = ",12:9,12:3,40:1,bad,7:0,12:3";
+        Map<Integer, List<Integer>> expected = PositionParser.parsePositions(legacy);
+
+        PostingsCursor cursor = new PostingsCursor().reset(PostingsCodec.fromLegacy(legacy));
+        assertEquals(3, cursor.docCount());
+        assertEquals(2, cursor.maxFreq());
+
+        assertEquals(7, cursor.nextDoc());
+        assertEquals(1, cursor.freq());
+        assertEquals(0, cursor.nextPosition());
+
+        assertEquals(12, cursor.nextDoc());
+        assertEquals(2, cursor.freq());
+        assertEquals(3, cursor.nextPosition());
+        assertEquals(9, cursor.nextPosition());
+
+        assertEquals(40, cursor.nextDoc());
+        assertEquals(expected.get(40).size(), cursor.freq());
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+    }
+
+    @Test
+    void testAdvanceAcrossBlocks() {
+        PostingsWriter writer = new PostingsWriter();
+        List<Integer> docs = new ArrayList<>();
+        for (int doc = 3; doc < 5000; doc += 3) {
+            docs.add(doc);
+            writer.add(doc, doc % 7);
+            writer.add(doc, doc % 7 + 2);
+        }
+        byte[] postings = writer.toByteArray();
+
+        PostingsCursor cursor = new PostingsCursor().reset(postings);
+        assertEquals(docs.size(), cursor.docCount());
+        assertEquals(3, cursor.advance(1));
+        assertEquals(600, cursor.advance(599));
+        assertEquals(2, cursor.freq());
+        assertEquals(600 % 7, cursor.nextPosition());
+        assertEquals(603, cursor.nextDoc());
+        assertEquals(4998, cursor.advance(4998));
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.advance(4999));
+
+        // 跳过位置不读也能正确迭代全部文档
+        cursor.reset(postings);
+        int count = 0;
+        while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+            assertEquals(docs.get(count++), cursor.docId());
+        }
+        assertEquals(docs.size(), count);
+    }
+
+    @Test
+    void testMergeTail() {
+        byte[] base = PostingsCodec.fromLegacy("1:0,5:2");
+        PostingsCursor cursor = new PostingsCursor().reset(PostingsCodec.merge(base, ",5:1,3:4,1:0"));
+
+        assertEquals(3, cursor.docCount());
+        assertEquals(1, cursor.nextDoc());
+        assertEquals(1, cursor.freq());
+        assertEquals(3, cursor.nextDoc());
+        assertEquals(5, cursor.nextDoc());
+        assertEquals(2, cursor.freq());
+        assertEquals(1, cursor.nextPosition());
+        assertEquals(2, cursor.nextPosition());
+    }
+
+    @Test
+    void testRemoveDocs() {
+        byte[] postings = PostingsCodec.fromLegacy(",1:0,5:2,3:4,5:1,9:7");
+        BitSet deleted = new BitSet();
+        deleted.set(4);
+        assertSame(postings, PostingsCodec.removeDocs(postings, deleted));
+
+        deleted.set(5);
+        PostingsCursor cursor = new PostingsCursor().reset(PostingsCodec.removeDocs(postings, deleted));
+        assertEquals(3, cursor.docCount());
+        assertEquals(1, cursor.nextDoc());
+        assertEquals(3, cursor.nextDoc());
+        assertEquals(4, cursor.nextPosition());
+        assertEquals(9, cursor.nextDoc());
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.searchenginedemo.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentReaderTest {
+
+    @Test
+    void testWriteMergeAndRead(@TempDir Path dir) throws Exception {
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("segment-1"))) {
+            writer.addTerm("b", PostingsCodec.fromLegacy("1:0,3:2"));
+            writer.addTerm("a", PostingsCodec.fromLegacy("1:1"));
+            writer.addNorm(1, 10);
+            writer.addNorm(3, 30);
+            writer.commit();
+        }
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("segment-2"))) {
+            writer.addTerm("b", PostingsCodec.fromLegacy("2:4,3:2"));
+            writer.addTerm("c", PostingsCodec.fromLegacy("2:5"));
+            writer.addNorm(2, 20);
+            writer.addNorm(3, 31);
+            writer.commit();
+        }
+
+        SegmentReader first = SegmentReader.open(dir.resolve("segment-1"));
+        assertEquals(2, first.termCount());
+        assertEquals("a", first.term(0));
+        assertTrue(first.ord("c") < 0);
+
+        SegmentWriter.merge(List.of(first, SegmentReader.open(dir.resolve("segment-2"))), dir.resolve("segment-3"));
+        SegmentReader merged = SegmentReader.open(dir.resolve("segment-3"));
+        assertEquals(3, merged.termCount());
+
+        // 两个段中的 "b" 合并去重
+        ByteBuffer postings = merged.postings(merged.ord("b"));
+        assertArrayEquals(PostingsCodec.fromLegacy("1:0,2:4,3:2"), bytes(postings));
+
+        // 较新段中的文档长度覆盖较旧的
+        Map<Integer, Integer> norms = new HashMap<>();
+        merged.forEachNorm(norms::put);
+        assertEquals(Map.of(1, 10, 2, 20, 3, 31), norms);
+    }
+
+    @Test
+    void testMergeDropsSupersededDocs(@TempDir Path dir) throws Exception {
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("segment-1"))) {
+            writer.addTerm("a", PostingsCodec.fromLegacy("1:0,2:3"));
+            writer.addTerm("old", PostingsCodec.fromLegacy("2:1"));
+            writer.addNorm(1, 10);
+            writer.addNorm(2, 20);
+            writer.commit();
+        }
+        // 文档 2 重新索引
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("segment-2"))) {
+            writer.addTerm("a", PostingsCodec.fromLegacy("2:3"));
+            writer.addNorm(2, 5);
+            writer.commit();
+        }
+
+        BitSet superseded = new BitSet();
+        superseded.set(2);
+        List<SegmentReader> readers = List.of(
+                SegmentReader.open(dir.resolve("segment-1")), SegmentReader.open(dir.resolve("segment-2")));
+        SegmentWriter.merge(readers, Arrays.asList(superseded, null), dir.resolve("segment-3"), null, null);
+        SegmentReader merged = SegmentReader.open(dir.resolve("segment-3"));
+
+        // 旧版本中的词不再出现，新版本的位置只计一次
+        assertTrue(merged.ord("old") < 0);
+        assertArrayEquals(PostingsCodec.fromLegacy("1:0,2:3"), bytes(merged.postings(merged.ord("a"))));
+
+        Map<Integer, Integer> norms = new HashMap<>();
+        merged.forEachNorm(norms::put);
+        assertEquals(Map.of(1, 10, 2, 5), norms);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(0, bytes);
+        return bytes;
+    }
+}
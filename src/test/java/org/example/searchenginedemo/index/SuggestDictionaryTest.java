@@ -0,0 +1,68 @@
+package org.example.searchenginedemo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestDictionaryTest {
+
+    @Test
+    void testPrefixSuggestions() {
+        SuggestDictionary.Builder builder = new SuggestDictionary.Builder();
+        builder.add("搜索", 5f);
+        builder.add("搜索引擎", 9f);
+        builder.add("搜狗", 7f);
+        builder.add("数据", 8f);
+        builder.add("search", 3f);
+        builder.add("searching", 4f);
+        builder.add("sea", 1f);
+        builder.add("se", 2f);
+        builder.add("搜索", 6f);
+        SuggestDictionary dictionary = builder.build();
+
+        assertEquals(8, dictionary.size());
+        assertEquals(List.of("搜索引擎", "搜狗", "搜索"), dictionary.suggest("搜", 10));
+        // 重复加入时取最大权重
+        assertEquals(List.of("搜索引擎", "搜索"), dictionary.suggest("搜索", 10));
+        assertEquals(List.of("searching", "search"), dictionary.suggest("sear", 10));
+        assertEquals(List.of("searching"), dictionary.suggest("sea", 1));
+        assertTrue(dictionary.suggest("搜索引擎x", 10).isEmpty());
+        assertTrue(dictionary.suggest("z", 10).isEmpty());
+        assertTrue(new SuggestDictionary.Builder().build().suggest("a", 10).isEmpty());
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(11);
+        String alphabet = "ab搜索数据引擎z";
+        Map<String, Float> terms = new HashMap<>();
+        SuggestDictionary.Builder builder = new SuggestDictionary.Builder();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder term = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                term.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            float weight = random.nextInt(1000);
+            terms.merge(term.toString(), weight, Math::max);
+            builder.add(term.toString(), weight);
+        }
+        SuggestDictionary dictionary = builder.build();
+        assertEquals(terms.size(), dictionary.size());
+
+        for (String prefix : List.of("a", "ab", "搜", "搜索", "数据引", "z", "b搜", "zzzzzzz")) {
+            List<String> expected = new ArrayList<>();
+            terms.keySet().stream()
+                    .filter(term -> term.startsWith(prefix))
+                    .sorted(Comparator.<String, Float>comparing(terms::get).reversed()
+                            .thenComparing((a, b) -> Arrays.compareUnsigned(
+                                    a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8))))
+                    .limit(8)
+                    .forEach(expected::add);
+            assertEquals(expected, dictionary.suggest(prefix, 8), prefix);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.searchenginedemo.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PageTermsSerializerTest {
+
+    @Test
+    void testRoundTrip() {
+        Map<String, int[]> termPositions = new LinkedHashMap<>();
+        termPositions.put("搜索", new int[]{0, 7, 300});
+        termPositions.put("engine", new int[]{1});
+        PageTerms original = new PageTerms(123456, 301, 2, termPositions);
+
+        byte[] bytes = new PageTermsSerializer().serialize("word-segments", original);
+        PageTerms decoded = new PageTermsDeserializer().deserialize("word-segments", bytes);
+
+        assertEquals(123456, decoded.getPageId());
+        assertEquals(301, decoded.getTokenCount());
+        assertEquals(2, decoded.getPart());
+        assertEquals(2, decoded.getTermPositions().size());
+        assertArrayEquals(new int[]{0, 7, 300}, decoded.getTermPositions().get("搜索"));
+        assertArrayEquals(new int[]{1}, decoded.getTermPositions().get("engine"));
+    }
+
+    @Test
+    void testVersion1Message() {
+        // 版本1没有 part 字段: pageId=5, tokenCount=3, 一个词 "a" 位于位置 2
+        byte[] v1 = {PageTermsSerializer.MAGIC, 1, 5, 3, 1, 1, 'a', 1, 2};
+        PageTerms decoded = new PageTermsDeserializer().deserialize("word-segments", v1);
+
+        assertEquals(5, decoded.getPageId());
+        assertEquals(3, decoded.getTokenCount());
+        assertEquals(PageTerms.UNKNOWN_PART, decoded.getPart());
+        assertArrayEquals(new int[]{2}, decoded.getTermPositions().get("a"));
+    }
+
+    @Test
+    void testLegacyMessage() {
+        byte[] legacy = "搜索|42|9".getBytes(StandardCharsets.UTF_8);
+        PageTerms decoded = new PageTermsDeserializer().deserialize("word-segments", legacy);
+
+        assertEquals(42, decoded.getPageId());
+        assertEquals(PageTerms.UNKNOWN_PART, decoded.getPart());
+        assertArrayEquals(new int[]{9}, decoded.getTermPositions().get("搜索"));
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ExclusionFilterTest {
+
+    @Test
+    void testClauseRequiresAllTerms() {
+        BitSet excluded = ExclusionFilter.build(List.of(List.of("z", "w")), postings());
+        // 未加引号的多词子句只要求同时出现，不检查位置
+        assertEquals(bits(1, 2, 3), excluded);
+    }
+
+    @Test
+    void testPhraseRequiresAdjacentTerms() {
+        ParsedQuery.Phrase phrase = new ParsedQuery.Phrase(List.of("z", "w"), new int[]{0, 1});
+        BitSet excluded = ExclusionFilter.build(List.of(), List.of(phrase), postings());
+        // 文档1中 z w 相邻；文档2中不相邻，文档3中顺序相反，都不排除
+        assertEquals(bits(1), excluded);
+    }
+
+    @Test
+    void testPhraseOffsetsWithGap() {
+        // "z 的 w" 中停用词占用一个位置
+        ParsedQuery.Phrase phrase = new ParsedQuery.Phrase(List.of("z", "w"), new int[]{0, 2});
+        Map<String, ByteBuffer> postings = new HashMap<>();
+        postings.put("z", ByteBuffer.wrap(PostingsCodec.fromLegacy("1:3,2:3")));
+        postings.put("w", ByteBuffer.wrap(PostingsCodec.fromLegacy("1:5,2:4")));
+        assertEquals(bits(1), ExclusionFilter.build(List.of(), List.of(phrase), postings));
+    }
+
+    @Test
+    void testMissingTermIgnored() {
+        ParsedQuery.Phrase phrase = new ParsedQuery.Phrase(List.of("z", "missing"), new int[]{0, 1});
+        assertNull(ExclusionFilter.build(List.of(List.of("missing")), List.of(phrase), postings()));
+    }
+
+    private static Map<String, ByteBuffer> postings() {
+        Map<String, ByteBuffer> postings = new HashMap<>();
+        postings.put("z", ByteBuffer.wrap(PostingsCodec.fromLegacy("1:3,2:3,3:6")));
+        postings.put("w", ByteBuffer.wrap(PostingsCodec.fromLegacy("1:4,2:9,3:5")));
+        return postings;
+    }
+
+    private static BitSet bits(int... docs) {
+        BitSet bits = new BitSet();
+        for (int doc : docs) {
+            bits.set(doc);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.index.ImpactCodec;
+import org.example.searchenginedemo.index.ImpactCursor;
+import org.example.searchenginedemo.index.ImpactModel;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.index.PostingsWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImpactEvaluatorTest {
+    private static final ImpactModel MODEL = new ImpactModel(1.2, 0.75, 200);
+
+    @Test
+    void testCodecRoundTrip() {
+        PostingsWriter writer = new PostingsWriter();
+        writer.add(1, 0);
+        writer.add(2, 0);
+        writer.add(2, 5);
+        writer.add(2, 9);
+        writer.add(7, 3);
+        byte[] impacts = ImpactCodec.encode(new PostingsCursor().reset(writer.toByteArray()), MODEL, doc -> 200);
+
+        ImpactCursor cursor = new ImpactCursor().reset(ByteBuffer.wrap(impacts), 0, MODEL);
+        assertEquals(3, cursor.docCount());
+        // 词频为 3 的文档影响值最高，排在最前
+        int high = cursor.nextLevel();
+        assertEquals(MODEL.quantize(3, 200), high);
+        assertEquals(1, cursor.levelSize());
+        assertEquals(2, cursor.nextDoc());
+        assertEquals(MODEL.quantize(1, 200), cursor.nextLevel());
+        assertEquals(2, cursor.levelSize());
+        assertEquals(1, cursor.nextDoc());
+        assertEquals(7, cursor.nextDoc());
+        assertEquals(0, cursor.nextLevel());
+    }
+
+    @Test
+    void testEarlyTerminationKeepsTopKSet() {
+        Random random = new Random(7);
+        int docs = 5000;
+        int[] lengths = new int[docs];
+        for (int doc = 0; doc < docs; doc++) {
+            lengths[doc] = 20 + random.nextInt(400);
+        }
+        byte[][] impacts = new byte[3][];
+        double[] idfs = {0.4, 1.7, 3.1};
+        for (int t = 0; t < impacts.length; t++) {
+            PostingsWriter writer = new PostingsWriter();
+            for (int doc = 0; doc < docs; doc++) {
+                if (random.nextInt(3 + t * 4) == 0) {
+                    int freq = 1 + random.nextInt(6);
+                    for (int p = 0; p < freq; p++) {
+                        writer.add(doc, p);
+                    }
+                }
+            }
+            impacts[t] = ImpactCodec.encode(new PostingsCursor().reset(writer.toByteArray()), MODEL, doc -> lengths[doc]);
+        }
+
+        for (int k : new int[]{1, 10, 50}) {
+            TopKCollector early = new TopKCollector(k);
+            ImpactEvaluator.evaluate(cursors(impacts), idfs, early);
+            // 容量足够大时不会提前停止，得到完整的累加结果
+            TopKCollector full = new TopKCollector(docs);
+            ImpactEvaluator.evaluate(cursors(impacts), idfs, full);
+
+            ScoreDoc[] all = full.topDocs();
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < k; i++) {
+                expected.add(all[i].getDocId());
+            }
+            Set<Integer> actual = new HashSet<>();
+            for (ScoreDoc doc : early.topDocs()) {
+                actual.add(doc.getDocId());
+            }
+            assertEquals(expected, actual, "k=" + k);
+        }
+    }
+
+    @Test
+    void testTermInSeveralSegmentsScoresOnce() {
+        // 文档 1 同时出现在同一个词的两个段中，文档 2 只在第二个段中
+        PostingsWriter first = new PostingsWriter();
+        first.add(1, 0);
+        first.add(1, 4);
+        PostingsWriter second = new PostingsWriter();
+        second.add(1, 4);
+        second.add(2, 0);
+        byte[][] impacts = {
+                ImpactCodec.encode(new PostingsCursor().reset(first.toByteArray()), MODEL, doc -> 200),
+                ImpactCodec.encode(new PostingsCursor().reset(second.toByteArray()), MODEL, doc -> 200)
+        };
+
+        TopKCollector collector = new TopKCollector(10);
+        ImpactEvaluator.evaluate(cursors(impacts), new double[]{1.0, 1.0}, new int[]{0, 0}, null, collector);
+        ScoreDoc[] top = collector.topDocs();
+
+        assertEquals(2, top.length);
+        // 文档 1 只计较大的一次贡献(词频 2)，不再与词频 1 的贡献相加
+        assertEquals(1, top[0].getDocId());
+        double expected = MODEL.quantize(2, 200) * MODEL.scale();
+        assertEquals(expected, top[0].getScore(), 1e-9);
+    }
+
+    private static ImpactCursor[] cursors(byte[][] impacts) {
+        ImpactCursor[] cursors = new ImpactCursor[impacts.length];
+        for (int i = 0; i < impacts.length; i++) {
+            cursors[i] = new ImpactCursor().reset(ByteBuffer.wrap(impacts[i]), 0, MODEL);
+        }
+        return cursors;
+    }
+}
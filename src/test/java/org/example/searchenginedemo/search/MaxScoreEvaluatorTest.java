@@ -0,0 +1,215 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.example.searchenginedemo.entity.PageStats;
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.index.PostingsWriter;
+import org.example.searchenginedemo.mapper.SearchMapper;
+import org.example.searchenginedemo.service.BM25Service;
+import org.example.searchenginedemo.service.NormsService;
+import org.example.searchenginedemo.service.ShardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MaxScoreEvaluatorTest {
+    private static final int DOC_COUNT = 5000;
+
+    @Test
+    void testMatchesExhaustiveScoring() {
+        Random random = new Random(42);
+        BM25Service bm25Service = bm25Service(random);
+
+        // 一个高频词、两个中频词、一个低频词
+        double[] densities = {0.6, 0.1, 0.05, 0.005};
+        List<byte[]> postings = new ArrayList<>();
+        for (double density : densities) {
+            PostingsWriter writer = new PostingsWriter();
+            for (int doc = 1; doc <= DOC_COUNT; doc++) {
+                if (random.nextDouble() < density) {
+                    int freq = 1 + random.nextInt(6);
+                    for (int pos = 0; pos < freq; pos++) {
+                        writer.add(doc, pos * 7);
+                    }
+                }
+            }
+            postings.add(writer.toByteArray());
+        }
+
+        for (int topK : new int[]{1, 10, 100}) {
+            TermScorer[] scorers = new TermScorer[postings.size()];
+            for (int i = 0; i < scorers.length; i++) {
+                scorers[i] = new TermScorer("t" + i, postings.get(i), bm25Service);
+            }
+            TopKCollector collector = new TopKCollector(topK);
+            MaxScoreEvaluator.evaluate(scorers, collector);
+            ScoreDoc[] actual = collector.topDocs();
+
+            ScoreDoc[] expected = exhaustive(postings, bm25Service, topK);
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getDocId(), actual[i].getDocId());
+                assertEquals(expected[i].getScore(), actual[i].getScore(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testSearchAfterPagination() {
+        Random random = new Random(3);
+        BM25Service bm25Service = bm25Service(random);
+        List<byte[]> postings = new ArrayList<>();
+        for (double density : new double[]{0.3, 0.02}) {
+            PostingsWriter writer = new PostingsWriter();
+            for (int doc = 1; doc <= DOC_COUNT; doc++) {
+                if (random.nextDouble() < density) {
+                    writer.add(doc, 0);
+                }
+            }
+            postings.add(writer.toByteArray());
+        }
+        ScoreDoc[] expected = exhaustive(postings, bm25Service, 95);
+
+        // 逐页传入上一页最后一个文档，拼接后应与一次取前95个相同
+        List<ScoreDoc> paged = new ArrayList<>();
+        SearchAfter after = null;
+        for (int page = 0; page < 10; page++) {
+            TermScorer[] scorers = new TermScorer[postings.size()];
+            for (int i = 0; i < scorers.length; i++) {
+                scorers[i] = new TermScorer("t" + i, postings.get(i), bm25Service);
+            }
+            TopKCollector collector = new TopKCollector(Math.min(10, 95 - paged.size()), after);
+            MaxScoreEvaluator.evaluate(scorers, collector);
+            ScoreDoc[] docs = collector.topDocs();
+            if (docs.length == 0) {
+                break;
+            }
+            paged.addAll(List.of(docs));
+            ScoreDoc last = docs[docs.length - 1];
+            after = SearchAfter.decode(new SearchAfter(last.getScore(), last.getDocId(), 7).encode());
+            assertEquals(7, after.getGeneration());
+        }
+        assertEquals(expected.length, paged.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getDocId(), paged.get(i).getDocId());
+        }
+    }
+
+    @Test
+    void testPhraseAndProximity() {
+        // 所有文档长度相同，排序差异只来自邻近度
+        BM25Service bm25Service = bm25Service(null);
+
+        // 文档1: "a b" 相邻; 文档2: "b a" 逆序; 文档3: a 与 b 相距较远; 文档4: 只有 a
+        PostingsWriter a = new PostingsWriter();
+        PostingsWriter b = new PostingsWriter();
+        a.add(1, 4);
+        b.add(1, 5);
+        a.add(2, 9);
+        b.add(2, 8);
+        a.add(3, 0);
+        b.add(3, 30);
+        a.add(4, 2);
+        byte[] aPostings = a.toByteArray();
+        byte[] bPostings = b.toByteArray();
+
+        ParsedQuery phraseQuery = QueryParser.parse("\"a b\"", new TextAnalyzer());
+        TermScorer[] scorers = {new TermScorer("a", aPostings, bm25Service), new TermScorer("b", bPostings, bm25Service)};
+        TopKCollector collector = new TopKCollector(10);
+        MaxScoreEvaluator.evaluate(scorers, new TermScorer[0],
+                new ProximityScorer(scorers, phraseQuery.getPhrases()), collector);
+        ScoreDoc[] phraseDocs = collector.topDocs();
+        assertEquals(1, phraseDocs.length);
+        assertEquals(1, phraseDocs[0].getDocId());
+
+        // 非短语查询：相邻的文档排在相距较远的文档之前
+        scorers = new TermScorer[]{new TermScorer("a", aPostings, bm25Service), new TermScorer("b", bPostings, bm25Service)};
+        collector = new TopKCollector(10);
+        MaxScoreEvaluator.evaluate(new TermScorer[0], scorers, new ProximityScorer(scorers, List.of()), collector);
+        ScoreDoc[] docs = collector.topDocs();
+        assertEquals(4, docs.length);
+        assertEquals(1, docs[0].getDocId());
+        assertEquals(2, docs[1].getDocId());
+        assertEquals(3, docs[2].getDocId());
+        assertEquals(4, docs[3].getDocId());
+    }
+
+    @Test
+    void testExcludedClauses() {
+        // 相当于 "x AND y NOT z OR w"，解析见 QueryParserTest
+        BM25Service bm25Service = bm25Service(null);
+        Map<String, ByteBuffer> postings = new HashMap<>();
+        postings.put("x", ByteBuffer.wrap(PostingsCodec.fromLegacy("1:0,2:0,3:0,4:0")));
+        postings.put("y", ByteBuffer.wrap(PostingsCodec.fromLegacy("2:1,3:1,4:1,5:1")));
+        postings.put("z", ByteBuffer.wrap(PostingsCodec.fromLegacy("3:2")));
+        postings.put("w", ByteBuffer.wrap(PostingsCodec.fromLegacy("4:3,6:3")));
+
+        TermScorer[] required = {new TermScorer("x", postings.get("x"), bm25Service),
+                new TermScorer("y", postings.get("y"), bm25Service)};
+        TermScorer[] optional = {new TermScorer("w", postings.get("w"), bm25Service)};
+        TopKCollector collector = new TopKCollector(10);
+        MaxScoreEvaluator.evaluate(required, optional, null,
+                ExclusionFilter.build(List.of(List.of("z")), postings), collector);
+        ScoreDoc[] docs = collector.topDocs();
+        // 文档3包含 z 被排除，文档4额外包含可选词 w 排在最前
+        assertEquals(2, docs.length);
+        assertEquals(4, docs[0].getDocId());
+        assertEquals(2, docs[1].getDocId());
+    }
+
+    @Test
+    void testZeroCapacity() {
+        TopKCollector collector = new TopKCollector(0);
+        assertEquals(Double.POSITIVE_INFINITY, collector.threshold());
+
+        BM25Service bm25Service = bm25Service(null);
+        TermScorer[] scorers = {new TermScorer("a", PostingsCodec.fromLegacy("1:0,2:0"), bm25Service)};
+        MaxScoreEvaluator.evaluate(new TermScorer[0], scorers, null, collector);
+        assertEquals(0, collector.topDocs().length);
+    }
+
+    private BM25Service bm25Service(Random random) {
+        NormsService normsService = new NormsService();
+        for (int doc = 1; doc <= DOC_COUNT; doc++) {
+            normsService.put(doc, random == null ? 220 : 20 + random.nextInt(400));
+        }
+        SearchMapper searchMapper = mock(SearchMapper.class);
+        // 全部文档放在一个分表中，其余分表为空，全局统计应与单表一致
+        when(searchMapper.getPageStats(anyString())).thenAnswer(invocation -> {
+            PageStats stats = new PageStats();
+            if ("pages0".equals(invocation.getArgument(0))) {
+                stats.setPageCount(DOC_COUNT);
+                stats.setTotalLength(220L * DOC_COUNT);
+                stats.setLengthCount(DOC_COUNT);
+            }
+            return stats;
+        });
+
+        BM25Service bm25Service = new BM25Service();
+        ReflectionTestUtils.setField(bm25Service, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(bm25Service, "normsService", normsService);
+        ReflectionTestUtils.setField(bm25Service, "shardService", new ShardService());
+        return bm25Service;
+    }
+
+    private ScoreDoc[] exhaustive(List<byte[]> postings, BM25Service bm25Service, int topK) {
+        TreeMap<Integer, Double> scores = new TreeMap<>();
+        for (int i = 0; i < postings.size(); i++) {
+            TermScorer scorer = new TermScorer("t" + i, postings.get(i), bm25Service);
+            while (scorer.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                scores.merge(scorer.docId(), scorer.score(), Double::sum);
+            }
+        }
+        TopKCollector collector = new TopKCollector(topK);
+        scores.forEach(collector::collect);
+        return collector.topDocs();
+    }
+}
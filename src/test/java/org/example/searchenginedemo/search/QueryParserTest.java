@@ -0,0 +1,65 @@
+package org.example.searchenginedemo.search;
+
+import org.example.searchenginedemo.analysis.TextAnalyzer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryParserTest {
+
+    @Test
+    void testBooleanOperators() {
+        ParsedQuery parsed = QueryParser.parse("x AND y NOT z OR w", new TextAnalyzer());
+        assertEquals(Set.of("x", "y"), parsed.getRequiredTerms());
+        assertEquals(List.of("x", "y", "w"), parsed.getTerms());
+        assertEquals(List.of(List.of("z")), parsed.getExcludedClauses());
+        assertTrue(parsed.getExcludedPhrases().isEmpty());
+
+        // 默认运算符为 AND 时未加前缀的词也是必须词
+        assertEquals(Set.of("x", "y"), QueryParser.parse("x y", new TextAnalyzer(), true).getRequiredTerms());
+    }
+
+    @Test
+    void testQuotedExclusionIsPhrase() {
+        ParsedQuery prefixed = QueryParser.parse("+x -\"z w\" y", new TextAnalyzer());
+        assertEquals(Set.of("x"), prefixed.getRequiredTerms());
+        assertTrue(prefixed.getExcludedClauses().isEmpty());
+        assertEquals(1, prefixed.getExcludedPhrases().size());
+        assertEquals(List.of("z", "w"), prefixed.getExcludedPhrases().get(0).getTerms());
+        assertArrayEquals(new int[]{0, 1}, prefixed.getExcludedPhrases().get(0).getOffsets());
+
+        // NOT 之后的引号子句同样是排除短语，而不是必须匹配的短语
+        ParsedQuery not = QueryParser.parse("x NOT \"z w\"", new TextAnalyzer());
+        assertEquals(List.of("x"), not.getTerms());
+        assertTrue(not.getPhrases().isEmpty());
+        assertEquals(List.of("z", "w"), not.getExcludedPhrases().get(0).getTerms());
+
+        // 只有一个词的引号子句与普通排除词相同
+        assertEquals(List.of(List.of("z")), QueryParser.parse("x -\"z\"", new TextAnalyzer()).getExcludedClauses());
+    }
+
+    @Test
+    void testStopwordOnlyExclusion() {
+        TextAnalyzer analyzer = new TextAnalyzer();
+        ReflectionTestUtils.setField(analyzer, "stopwordsEnabled", true);
+        analyzer.init();
+
+        // 排除子句只有停用词时被忽略，后面的词不受 NOT 影响
+        ParsedQuery parsed = QueryParser.parse("x NOT 的 y", analyzer);
+        assertEquals(List.of("x", "y"), parsed.getTerms());
+        assertFalse(parsed.hasExclusions());
+
+        ParsedQuery quoted = QueryParser.parse("x NOT \"的 了\" y", analyzer);
+        assertEquals(List.of("x", "y"), quoted.getTerms());
+        assertFalse(quoted.hasExclusions());
+
+        // 停用词仍占用位置，排除短语的偏移与索引中的位置一致
+        ParsedQuery gap = QueryParser.parse("x -\"z 的 w\"", analyzer);
+        assertEquals(List.of("z", "w"), gap.getExcludedPhrases().get(0).getTerms());
+        assertArrayEquals(new int[]{0, 2}, gap.getExcludedPhrases().get(0).getOffsets());
+    }
+}
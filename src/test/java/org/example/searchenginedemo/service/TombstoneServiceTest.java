@@ -0,0 +1,140 @@
+package org.example.searchenginedemo.service;
+
+import org.example.searchenginedemo.entity.Tombstone;
+import org.example.searchenginedemo.index.IndexGeneration;
+import org.example.searchenginedemo.index.LiveDocs;
+import org.example.searchenginedemo.index.PostingsCodec;
+import org.example.searchenginedemo.index.PostingsCursor;
+import org.example.searchenginedemo.mapper.DictMapper;
+import org.example.searchenginedemo.mapper.PagesMapper;
+import org.example.searchenginedemo.mapper.TombstoneMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TombstoneServiceTest {
+
+    /**
+     * 压缩读取了没有尾部的词条后，索引服务追加尾部、迁移任务将其折叠进二进制部分；
+     * 压缩随后的写入必须失败，不能用旧的二进制部分覆盖新折叠进来的倒排项
+     */
+    @Test
+    void testConcurrentFoldDuringEmptyTailCompaction() throws Exception {
+        WordDict dict = new WordDict();
+        dict.postings.put("a", PostingsCodec.fromLegacy("1:0,2:0"));
+
+        DictMapper dictMapper = mock(DictMapper.class);
+        when(dictMapper.selectPostingsPage(anyString(), anyInt()))
+                .thenAnswer(invocation -> dict.select(invocation.getArgument(0), false));
+        when(dictMapper.selectPendingPostings(anyString(), anyInt()))
+                .thenAnswer(invocation -> dict.select(invocation.getArgument(0), true));
+
+        PostingsMigrationService migration = new PostingsMigrationService();
+        ReflectionTestUtils.setField(migration, "dictMapper", dictMapper);
+
+        // 压缩第一次写入前，另一个线程追加文档 3 并完成折叠
+        AtomicBoolean interleaved = new AtomicBoolean(false);
+        when(dictMapper.foldPostings(anyString(), any(), any(), anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            if (Thread.currentThread().getName().equals("compaction") && interleaved.compareAndSet(false, true)) {
+                dict.append(name, ",3:5");
+                Thread folder = new Thread(migration::migrateAll);
+                folder.start();
+                folder.join();
+            }
+            return dict.fold(name, invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3));
+        });
+
+        Tombstone tombstone = new Tombstone();
+        tombstone.setDocId(1);
+        TombstoneMapper tombstoneMapper = mock(TombstoneMapper.class);
+        when(tombstoneMapper.selectTombstones()).thenReturn(List.of(tombstone));
+
+        TombstoneService service = new TombstoneService();
+        ReflectionTestUtils.setField(service, "tombstoneMapper", tombstoneMapper);
+        ReflectionTestUtils.setField(service, "dictMapper", dictMapper);
+        ReflectionTestUtils.setField(service, "pagesMapper", mock(PagesMapper.class));
+        ReflectionTestUtils.setField(service, "shardService", new ShardService());
+        ReflectionTestUtils.setField(service, "postingsService", mock(PostingsService.class));
+        ReflectionTestUtils.setField(service, "segmentStore", mock(SegmentStore.class));
+        ReflectionTestUtils.setField(service, "liveDocs", new LiveDocs());
+        ReflectionTestUtils.setField(service, "indexGeneration", new IndexGeneration());
+
+        runAs("compaction", service::compact);
+        assertEquals(List.of(1, 2, 3), docs(dict.postings.get("a")));
+
+        // 下一轮压缩移除墓碑文档，保留新折叠进来的文档
+        runAs("compaction", service::compact);
+        assertEquals(List.of(2, 3), docs(dict.postings.get("a")));
+        assertFalse(dict.positions.containsKey("a"));
+    }
+
+    private static void runAs(String threadName, Runnable task) throws InterruptedException {
+        Thread thread = new Thread(task, threadName);
+        thread.start();
+        thread.join();
+    }
+
+    private static List<Integer> docs(byte[] postings) {
+        List<Integer> docs = new ArrayList<>();
+        PostingsCursor cursor = new PostingsCursor().reset(postings);
+        for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    /**
+     * 内存中的 word_dict，fold 与 DictMapper.xml 中 foldPostings 的条件更新一致
+     */
+    private static class WordDict {
+        final Map<String, byte[]> postings = new TreeMap<>();
+        final Map<String, String> positions = new TreeMap<>();
+
+        synchronized List<Map<String, Object>> select(String afterName, boolean pendingOnly) {
+            Set<String> names = new TreeSet<>(postings.keySet());
+            names.addAll(positions.keySet());
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (String name : names) {
+                if (name.compareTo(afterName) <= 0 || (pendingOnly && !positions.containsKey(name))) {
+                    continue;
+                }
+                Map<String, Object> row = new HashMap<>();
+                row.put("name", name);
+                row.put("postings", postings.get(name));
+                row.put("positions", positions.get(name));
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        synchronized void append(String name, String tail) {
+            positions.merge(name, tail, String::concat);
+        }
+
+        synchronized int fold(String name, byte[] expected, byte[] folded, String tail) {
+            String current = positions.getOrDefault(name, "");
+            if (!Arrays.equals(postings.get(name), expected) || !current.startsWith(tail)) {
+                return 0;
+            }
+            postings.put(name, folded);
+            String rest = current.substring(tail.length());
+            if (rest.isEmpty()) {
+                positions.remove(name);
+            } else {
+                positions.put(name, rest);
+            }
+            return 1;
+        }
+    }
+}